@@ -17,6 +17,16 @@ class AnyTokenLabel<T> implements  LazyLabelIF<T> {
 		return true;
 	}
 
+	@Override
+	public boolean equals(Object obj) {
+		return obj != null && obj.getClass() == getClass();
+	}
+
+	@Override
+	public int hashCode() {
+		return AnyTokenLabel.class.hashCode();
+	}
+
 	@Override
 	public String toString() {
 		return "[ .]";
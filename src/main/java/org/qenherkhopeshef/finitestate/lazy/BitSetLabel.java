@@ -0,0 +1,81 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.BitSet;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * A label recognising tokens whose code (char value, int value) is in a
+ * bit set.
+ * <p>
+ * Much more compact than a {@link SetLabel} for large sets of characters. The
+ * bit set is copied.</p>
+ *
+ * @author rosmord
+ * @param <T> the token type.
+ */
+final class BitSetLabel<T> implements LazyLabelIF<T> {
+
+    /**
+     * The type of the tokens, which determines how they are coded.
+     */
+    private enum Kind {
+        CHARS, INTS
+    }
+
+    private final BitSet codes;
+    private final Kind kind;
+    private final ToIntFunction<? super T> code;
+    private final IntFunction<T> token;
+
+    /**
+     * @param codes the codes of the accepted tokens.
+     * @param kind the type of the tokens.
+     * @param code computes the code of a token.
+     * @param token the token for a code (the inverse of code).
+     */
+    private BitSetLabel(BitSet codes, Kind kind, ToIntFunction<? super T> code, IntFunction<T> token) {
+        this.codes = (BitSet) codes.clone();
+        this.kind = kind;
+        this.code = code;
+        this.token = token;
+    }
+
+    static BitSetLabel<Character> forChars(BitSet codes) {
+        return new BitSetLabel<>(codes, Kind.CHARS, c -> c, i -> (char) i);
+    }
+
+    static BitSetLabel<Integer> forInts(BitSet codes) {
+        return new BitSetLabel<>(codes, Kind.INTS, i -> i, i -> i);
+    }
+
+    BitSet getCodes() {
+        return (BitSet) codes.clone();
+    }
+
+    T token(int c) {
+        return token.apply(c);
+    }
+
+    @Override
+    public boolean matches(T t) {
+        int c = code.applyAsInt(t);
+        return c >= 0 && codes.get(c);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        } else if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        BitSetLabel<?> other = (BitSetLabel<?>) obj;
+        return codes.equals(other.codes) && kind == other.kind;
+    }
+
+    @Override
+    public int hashCode() {
+        return codes.hashCode();
+    }
+}
@@ -0,0 +1,89 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+/**
+ * Limits the memory used by the transition cache of a determinized search.
+ * <p>
+ * When patterns use complement() or inter(), the number of distinct sets of
+ * states met during a search can become very large. The cache is then limited
+ * both in number of states, and in (approximate) number of bytes. When a limit
+ * is reached, the cache evicts some states, according to its
+ * {@link EvictionPolicy}. The search itself is not affected : it simply
+ * becomes slower, as evicted states will need to be computed again.</p>
+ * <p>
+ * The size in bytes is an <em>estimate</em>, based on the number of states,
+ * of their members and of the transitions.</p>
+ *
+ * @author rosmord
+ * @see RegularExtractor.Builder#cacheBudget(CacheBudget)
+ * @see CacheStatistics
+ */
+public final class CacheBudget {
+
+    /**
+     * What to do when the cache is full.
+     */
+    public enum EvictionPolicy {
+        /**
+         * Forget the whole cache (as RE2 does). Cheap, but all states will
+         * need to be computed again.
+         */
+        FLUSH,
+        /**
+         * Forget the least recently used states, one at a time.
+         */
+        LRU
+    }
+
+    /**
+     * No limit at all.
+     */
+    public static final CacheBudget UNLIMITED
+            = new CacheBudget(Integer.MAX_VALUE, Long.MAX_VALUE, EvictionPolicy.LRU);
+
+    /**
+     * The budget used by default for determinized searches: 10 000 states, 32
+     * Mb.
+     */
+    public static final CacheBudget DEFAULT
+            = new CacheBudget(10_000, 32L * 1024 * 1024, EvictionPolicy.LRU);
+
+    private final int maxStates;
+    private final long maxBytes;
+    private final EvictionPolicy policy;
+
+    /**
+     * Creates a budget.
+     *
+     * @param maxStates the maximal number of cached states (at least 1).
+     * @param maxBytes the maximal approximate size of the cache, in bytes.
+     * @param policy the eviction policy.
+     */
+    public CacheBudget(int maxStates, long maxBytes, EvictionPolicy policy) {
+        if (maxStates < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("The budget must allow at least one state");
+        }
+        if (policy == null) {
+            throw new NullPointerException("policy should not be null");
+        }
+        this.maxStates = maxStates;
+        this.maxBytes = maxBytes;
+        this.policy = policy;
+    }
+
+    public int getMaxStates() {
+        return maxStates;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public EvictionPolicy getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheBudget{" + "maxStates=" + maxStates + ", maxBytes=" + maxBytes + ", policy=" + policy + '}';
+    }
+}
@@ -0,0 +1,64 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for the transition caches of a determinized search.
+ * <p>
+ * The counters are shared by all the caches of an extractor (one per thread),
+ * and can be read at any time.</p>
+ * <ul>
+ * <li>a <em>hit</em> is a token for which the transition was found in the
+ * cache;</li>
+ * <li>a <em>miss</em> is a token for which the transition had to be
+ * computed;</li>
+ * <li>an <em>eviction</em> is a state removed from the cache to respect its
+ * {@link CacheBudget}.</li>
+ * </ul>
+ *
+ * @author rosmord
+ */
+public final class CacheStatistics {
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    void hit() {
+        hits.increment();
+    }
+
+    void miss() {
+        misses.increment();
+    }
+
+    void evict() {
+        evictions.increment();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Resets all counters to 0.
+     */
+    public void reset() {
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStatistics{" + "hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + '}';
+    }
+}
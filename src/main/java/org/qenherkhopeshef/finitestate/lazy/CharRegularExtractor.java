@@ -0,0 +1,134 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A {@link RegularExtractor} for characters, which reads CharSequences
+ * directly.
+ * <p>
+ * The results are exactly those of the underlying extractor on
+ * {@link CharHelper#fromString(java.lang.String)}. But the text is not
+ * converted to a list : the class of each char is found in a table computed
+ * from the labels of the language, and the transitions are cached per class.
+ * Characters are only boxed when a transition is computed for the first
+ * time.</p>
+ * <p>
+ * Labels like {@link RegularLanguageFactory#charSet(java.util.BitSet)},
+ * exact(), range() or inSet() are analyzed ; other labels are evaluated once
+ * for each char value, when the extractor is built.</p>
+ * <p>
+ * This class is <strong>thread safe.</strong></p>
+ *
+ * @author rosmord
+ */
+public final class CharRegularExtractor {
+
+    private final RegularExtractor<Character> extractor;
+    private final PrimitiveClassTable<Character> table;
+
+    /**
+     * Builds a char extractor with the same language as an extractor.
+     *
+     * @param extractor
+     * @throws IllegalArgumentException if the language can't be analyzed.
+     */
+    public CharRegularExtractor(RegularExtractor<Character> extractor) {
+        this.table = PrimitiveClassTable.forChars(extractor.getParts());
+        this.extractor = extractor.withClassifier(table);
+    }
+
+    /**
+     * Builds a char extractor for a sequence of languages.
+     *
+     * @param parts the languages which make the sequence.
+     * @see RegularExtractor#RegularExtractor(java.util.List)
+     */
+    public CharRegularExtractor(List<RegularLanguageIF<Character>> parts) {
+        this(new RegularExtractor<>(parts));
+    }
+
+    /**
+     * Repeatedly search for matches of the regular language in a text.
+     *
+     * @param text
+     * @return
+     * @see RegularExtractor#search(java.util.List)
+     */
+    public List<MatchResult> search(CharSequence text) {
+        return search(text, 0);
+    }
+
+    /**
+     * Search matches in a text, with a max length constraint.
+     *
+     * @param text
+     * @param maxLength
+     * @return
+     * @see RegularExtractor#search(java.util.List, int)
+     */
+    public List<MatchResult> search(CharSequence text, int maxLength) {
+        return extractor.search(input(text), maxLength);
+    }
+
+    /**
+     * @param text
+     * @return
+     * @see RegularExtractor#recognizesBeginning(java.util.List)
+     */
+    public Optional<List<Integer>> recognizesBeginning(CharSequence text) {
+        return extractor.recognizesBeginning(input(text));
+    }
+
+    /**
+     * @param text
+     * @return
+     * @see RegularExtractor#recognizesAll(java.util.List)
+     */
+    public Optional<List<Integer>> recognizesAll(CharSequence text) {
+        return extractor.recognizesAll(input(text));
+    }
+
+    /**
+     * @return the statistics of the transition caches.
+     * @see RegularExtractor#getCacheStatistics()
+     */
+    public CacheStatistics getCacheStatistics() {
+        return extractor.getCacheStatistics();
+    }
+
+    private TokenInput<Character> input(CharSequence text) {
+        return new TokenInput<Character>() {
+            @Override
+            public int size() {
+                return text.length();
+            }
+
+            @Override
+            public Character get(int pos) {
+                return text.charAt(pos);
+            }
+
+            @Override
+            public boolean hasCodes() {
+                return true;
+            }
+
+            @Override
+            public int code(int pos) {
+                return text.charAt(pos);
+            }
+
+            @Override
+            public LazyDFA.Transition<Character> next(LazyDFA<Character> dfa, LazyDFA.State<Character> state, int pos) {
+                char c = text.charAt(pos);
+                int tokenClass = table.classOf(c);
+                LazyDFA.Transition<Character> transition = dfa.cachedTransition(state, tokenClass);
+                if (transition == null) {
+                    transition = dfa.next(state, tokenClass, c);
+                }
+                return transition;
+            }
+        };
+    }
+}
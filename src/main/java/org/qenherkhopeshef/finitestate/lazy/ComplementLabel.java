@@ -17,6 +17,10 @@ public class ComplementLabel<T> implements LazyLabelIF<T>{
     public ComplementLabel(LazyLabelIF<T> complementedLabel) {
         this.complementedLabel = complementedLabel;
     }
+
+    LazyLabelIF<T> getComplementedLabel() {
+        return complementedLabel;
+    }
     
     /**
      * Matches token iff complementedLabel doesn't match token.
@@ -26,5 +30,20 @@ public class ComplementLabel<T> implements LazyLabelIF<T>{
     public boolean matches(T token) {
         return ! complementedLabel.matches(token);
     }
-    
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        } else if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        ComplementLabel<?> other = (ComplementLabel<?>) obj;
+        return complementedLabel.equals(other.complementedLabel);
+    }
+
+    @Override
+    public int hashCode() {
+        return ~complementedLabel.hashCode();
+    }
 }
@@ -17,17 +17,50 @@ class ComplementLanguage<T> implements
         RegularLanguageIF<T> {
 
     private final RegularLanguageIF<T> complemented;
+    private final StateTable<Set<? extends MultiStateIF<T>>, ComplementState> table = new StateTable<>();
+    private final int hash;
 
     public ComplementLanguage(RegularLanguageIF<T> negated) {
         super();
         this.complemented = negated;
+        this.hash = 31 * negated.hashCode() + 3;
+    }
+
+    RegularLanguageIF<T> getComplemented() {
+        return complemented;
+    }
+
+    /**
+     * The number of canonical states currently kept by this language.
+     */
+    int getNumberOfStates() {
+        return table.size();
+    }
+
+    /**
+     * Returns the canonical state for a set of complemented states.
+     */
+    private ComplementState state(Set<? extends MultiStateIF<T>> complementedStates) {
+        ComplementState result = table.get(complementedStates);
+        if (result == null) {
+            result = table.intern(complementedStates, new ComplementState(complementedStates));
+        }
+        return result;
     }
 
     @Override
     public Set<? extends MultiStateIF<T>> getInitialStates() {
         HashSet<ComplementState> result = new HashSet<>();
-        Set<? extends MultiStateIF<T>> newChildren = complemented.getInitialStates();
-        result.add(new ComplementState(newChildren));
+        HashSet<MultiStateIF<T>> newChildren = new HashSet<>();
+        for (MultiStateIF<T> childState : complemented.getInitialStates()) {
+            if (!childState.isDead()) {
+                newChildren.add(childState);
+            }
+        }
+        ComplementState s = state(newChildren);
+        if (!s.isDead()) {
+            result.add(s);
+        }
         return result;
     }
 
@@ -37,17 +70,41 @@ class ComplementLanguage<T> implements
      * When a token is accepted, the resulting state is terminal iff accepting
      * the token in the complemented language does <b>not</b> lead to a terminal
      * state.
+     * <p>
+     * The complemented states only contain live states. Hence, the state is
+     * universal if there are none, and dead if one of them is universal.
      *
      * @author Serge Rosmorduc (serge.rosmorduc@qenherkhopeshef.org)
      */
     private class ComplementState extends AbstractMultiState<T> {
 
         private final Set<? extends MultiStateIF<T>> complementedStates;
+        private final int hash;
+        private final boolean dead;
 
         public ComplementState(
                 Set<? extends MultiStateIF<T>> complementedStates) {
             super(!containsTerminal(complementedStates));
             this.complementedStates = complementedStates;
+            this.hash = ComplementLanguage.this.hashCode() + 31 * complementedStates.hashCode();
+            boolean hasUniversal = false;
+            for (MultiStateIF<T> s : complementedStates) {
+                if (s.isUniversal()) {
+                    hasUniversal = true;
+                    break;
+                }
+            }
+            this.dead = hasUniversal;
+        }
+
+        @Override
+        public boolean isDead() {
+            return dead;
+        }
+
+        @Override
+        public boolean isUniversal() {
+            return complementedStates.isEmpty();
         }
 
         @Override
@@ -55,9 +112,16 @@ class ComplementLanguage<T> implements
             HashSet<ComplementState> result = new HashSet<>();
             HashSet<MultiStateIF<T>> newChildren = new HashSet<>();
             for (MultiStateIF<T> childState : complementedStates) {
-                newChildren.addAll(childState.accept(token));
+                for (MultiStateIF<T> n : childState.accept(token)) {
+                    if (!n.isDead()) {
+                        newChildren.add(n);
+                    }
+                }
+            }
+            ComplementState s = state(newChildren);
+            if (!s.isDead()) {
+                result.add(s);
             }
-            result.add(new ComplementState(newChildren));
             return result;
         }
 
@@ -69,9 +133,12 @@ class ComplementLanguage<T> implements
         @SuppressWarnings("unchecked")
         @Override
         public boolean equals(Object obj) {
-            if (obj instanceof ComplementLanguage.ComplementState) {
+            if (obj == this) {
+                return true;
+            } else if (obj instanceof ComplementLanguage.ComplementState) {
                 ComplementState other = (ComplementState) obj;
-                return this.getParent().equals(other.getParent())
+                return this.hash == other.hash
+                        && this.getParent().equals(other.getParent())
                         && this.terminal == other.terminal
                         && // This one is
                         // normally not
@@ -86,7 +153,7 @@ class ComplementLanguage<T> implements
 
         @Override
         public int hashCode() {
-            return getParent().hashCode() + 31 * complementedStates.hashCode();
+            return hash;
         }
 
         @Override
@@ -96,6 +163,25 @@ class ComplementLanguage<T> implements
 
     }
 
+    /**
+     * Two complements are equal if they complement equal languages.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        } else if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        ComplementLanguage<?> other = (ComplementLanguage<?>) obj;
+        return hash == other.hash && complemented.equals(other.complemented);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public String toString() {
         return "[~ " + complemented + "]";
@@ -4,6 +4,9 @@ import java.util.Set;
 
 /**
  * A label recognising any element not in a set.
+ * <p>
+ * The set is not copied, and may change : two labels are equal if they use
+ * the same set.</p>
  * @author rosmord
  * @param <T> 
  */
@@ -14,11 +17,39 @@ public class ComplementSetLabel<T> implements LazyLabelIF<T>{
     public ComplementSetLabel(Set<T> impossibleTokens) {
         this.impossibleTokens = impossibleTokens;
     }
+
+    Set<T> getImpossibleTokens() {
+        return impossibleTokens;
+    }
+
+    /**
+     * Does the set compare its elements with equals() and hashCode() ?
+     * @return 
+     * @see SetLabel#isHashSet() 
+     */
+    boolean isHashSet() {
+        return SetLabel.isHashSet(impossibleTokens);
+    }
     
     
     @Override
     public boolean matches(T token) {
         return ! impossibleTokens.contains(token);
     }
-    
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        } else if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        ComplementSetLabel<?> other = (ComplementSetLabel<?>) obj;
+        return impossibleTokens == other.impossibleTokens;
+    }
+
+    @Override
+    public int hashCode() {
+        return ~System.identityHashCode(impossibleTokens);
+    }
 }
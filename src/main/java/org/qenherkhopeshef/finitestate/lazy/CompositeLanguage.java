@@ -10,6 +10,10 @@ import java.util.List;
  */
 abstract class CompositeLanguage<T> implements RegularLanguageIF<T> {
 	private final List<RegularLanguageIF<T>> children;
+	/**
+	 * The structural hash code, computed once, as the children never change.
+	 */
+	private final int hash;
 
 	/**
 	 * Create a language made of the languages in children.
@@ -18,11 +22,30 @@ abstract class CompositeLanguage<T> implements RegularLanguageIF<T> {
 	public CompositeLanguage(List<? extends RegularLanguageIF<T>> children) {
 		super();
 		this.children = new ArrayList<>(children);
+		this.hash = getClass().hashCode() + 31 * this.children.hashCode();
 	}
 
 	protected List<RegularLanguageIF<T>> getChildren() {
 		return children;
 	}
-	
-	
+
+	/**
+	 * Two composite languages are equal if they have the same class and equal
+	 * children.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		} else if (obj == null || obj.getClass() != getClass()) {
+			return false;
+		}
+		CompositeLanguage<?> other = (CompositeLanguage<?>) obj;
+		return hash == other.hash && children.equals(other.children);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
 }
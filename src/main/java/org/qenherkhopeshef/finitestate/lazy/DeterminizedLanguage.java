@@ -0,0 +1,47 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A language whose recognition uses a cached lazy DFA.
+ * <p>
+ * The language is the same as the one it wraps, and behaves exactly like it
+ * when used as part of another language. Only {@link #recognize(java.util.List)}
+ * changes : it uses a {@link LazyDFA}, which is kept between calls. Each thread
+ * has its own cache, so the language is still thread safe.</p>
+ *
+ * @author rosmord
+ * @param <T> the token type.
+ * @see RegularLanguageFactory#determinize(RegularLanguageIF, CacheBudget)
+ */
+class DeterminizedLanguage<T> implements RegularLanguageIF<T> {
+
+    private final RegularLanguageIF<T> language;
+    private final ThreadLocal<LazyDFA<T>> cache;
+
+    public DeterminizedLanguage(RegularLanguageIF<T> language, CacheBudget budget) {
+        this.language = language;
+        CacheStatistics statistics = new CacheStatistics();
+        this.cache = ThreadLocal.withInitial(() -> new LazyDFA<>(language, budget, statistics));
+    }
+
+    RegularLanguageIF<T> getLanguage() {
+        return language;
+    }
+
+    @Override
+    public Set<? extends MultiStateIF<T>> getInitialStates() {
+        return language.getInitialStates();
+    }
+
+    @Override
+    public boolean recognize(List<T> tokens) {
+        return cache.get().recognize(tokens);
+    }
+
+    @Override
+    public String toString() {
+        return language.toString();
+    }
+}
@@ -0,0 +1,103 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A label which recognizes the tokens of several labels : the union of
+ * single-token languages is itself a single-token language.
+ * <p>
+ * The tokens of the exact() labels are merged in a hash set, so that they are
+ * tested with a single lookup ; the inSet() labels whose set is a hash set are
+ * tested directly on their set, and the other labels are tested one after the
+ * other.</p>
+ * <p>
+ * The sets of the inSet() labels are not copied : they keep their own notion
+ * of equality (a set built with a comparator may consider two different
+ * tokens as equal), and may be modified after the language is built.</p>
+ *
+ * @author rosmord
+ * @param <T> the token type.
+ */
+final class DispatchLabel<T> implements LazyLabelIF<T> {
+
+    private final HashSet<T> tokens = new HashSet<>();
+    private final List<SetLabel<T>> sets = new ArrayList<>();
+    private final List<LazyLabelIF<T>> fallback = new ArrayList<>();
+
+    /**
+     * @param labels the labels to merge.
+     */
+    @SuppressWarnings("unchecked")
+    DispatchLabel(List<LazyLabelIF<T>> labels) {
+        for (LazyLabelIF<T> label : labels) {
+            // Public label classes may be subclassed : test the exact class.
+            Class<?> c = label.getClass();
+            if (c == SimpleLabel.class) {
+                tokens.add(((SimpleLabel<T>) label).getToken());
+            } else if (c == SetLabel.class && ((SetLabel<T>) label).isHashSet()) {
+                sets.add((SetLabel<T>) label);
+            } else if (c == DispatchLabel.class) {
+                tokens.addAll(((DispatchLabel<T>) label).tokens);
+                sets.addAll(((DispatchLabel<T>) label).sets);
+                fallback.addAll(((DispatchLabel<T>) label).fallback);
+            } else {
+                fallback.add(label);
+            }
+        }
+    }
+
+    Set<T> getTokens() {
+        return Collections.unmodifiableSet(tokens);
+    }
+
+    List<SetLabel<T>> getSets() {
+        return Collections.unmodifiableList(sets);
+    }
+
+    List<LazyLabelIF<T>> getFallback() {
+        return Collections.unmodifiableList(fallback);
+    }
+
+    @Override
+    public boolean matches(T token) {
+        if (tokens.contains(token)) {
+            return true;
+        }
+        for (SetLabel<T> set : sets) {
+            if (set.matches(token)) {
+                return true;
+            }
+        }
+        for (LazyLabelIF<T> label : fallback) {
+            if (LabelMemo.isCostly(label) ? LabelMemo.matches(label, token) : label.matches(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "[dispatch " + tokens + " " + sets + " " + fallback + "]";
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        } else if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        DispatchLabel<?> other = (DispatchLabel<?>) obj;
+        return tokens.equals(other.tokens) && sets.equals(other.sets) && fallback.equals(other.fallback);
+    }
+
+    @Override
+    public int hashCode() {
+        return tokens.hashCode() + 31 * (sets.hashCode() + 31 * fallback.hashCode());
+    }
+}
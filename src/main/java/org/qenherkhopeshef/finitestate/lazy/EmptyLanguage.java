@@ -16,4 +16,16 @@ class EmptyLanguage<T> implements RegularLanguageIF<T>{
 		return Collections.emptySet();
 	}
 
+	/**
+	 * All empty languages are equal.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		return obj != null && obj.getClass() == getClass();
+	}
+
+	@Override
+	public int hashCode() {
+		return 5;
+	}
 }
@@ -12,11 +12,9 @@ import java.util.Set;
 class EmptyStringLanguage<T> implements RegularLanguageIF<T> {
 
     private final Set<? extends MultiStateIF<T>> firstStateSet;
-    private final Set<? extends MultiStateIF<T>> secondStateSet;
 
     public EmptyStringLanguage() {
         firstStateSet = Collections.singleton(new FirstState());
-        secondStateSet = Collections.singleton(new SecondState());
     }
 
     @Override
@@ -33,7 +31,8 @@ class EmptyStringLanguage<T> implements RegularLanguageIF<T> {
 
         @Override
         public Set<? extends MultiStateIF<T>> accept(T token) {
-            return secondStateSet;
+            // After any token, the state would be dead.
+            return Collections.emptySet();
         }
 
         @Override
@@ -42,33 +41,34 @@ class EmptyStringLanguage<T> implements RegularLanguageIF<T> {
         }
 
         @Override
-        public String toString() {
-            return "(0 ok)";
+        public boolean equals(Object obj) {
+            return obj instanceof EmptyStringLanguage.FirstState
+                    && getParent().equals(((EmptyStringLanguage<?>.FirstState) obj).getParent());
         }
 
-    }
-
-    private class SecondState implements MultiStateIF<T> {
-
         @Override
-        public boolean isTerminal() {
-            return false;
+        public int hashCode() {
+            return 31 * EmptyStringLanguage.this.hashCode();
         }
 
         @Override
-        public Set<? extends MultiStateIF<T>> accept(T token) {
-            return Collections.emptySet();
+        public String toString() {
+            return "(0 ok)";
         }
 
-        @Override
-        public RegularLanguageIF<T> getParent() {
-            return EmptyStringLanguage.this;
-        }
+    }
 
-        @Override
-        public String toString() {
-            return "(0 no)";
-        }
+    /**
+     * All empty sequences are equal.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj != null && obj.getClass() == getClass();
+    }
+
+    @Override
+    public int hashCode() {
+        return 6;
     }
 
     @Override
@@ -0,0 +1,133 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A {@link RegularExtractor} for integers (for instance, code points), which
+ * reads int arrays directly.
+ * <p>
+ * The results are exactly those of the underlying extractor on the list of
+ * boxed integers. The class of each int is found in a table computed from the
+ * labels of the language, and the transitions are cached per class. Integers
+ * are only boxed when a transition is computed for the first time.</p>
+ * <p>
+ * The labels must be built by {@link RegularLanguageFactory} :
+ * {@link RegularLanguageFactory#intSet(java.util.BitSet)}, exact(), range(),
+ * inSet() and their complements.</p>
+ * <p>
+ * This class is <strong>thread safe.</strong></p>
+ *
+ * @author rosmord
+ */
+public final class IntRegularExtractor {
+
+    private final RegularExtractor<Integer> extractor;
+    private final PrimitiveClassTable<Integer> table;
+
+    /**
+     * Builds an int extractor with the same language as an extractor.
+     *
+     * @param extractor
+     * @throws IllegalArgumentException if the language or one of its labels
+     * can't be analyzed.
+     */
+    public IntRegularExtractor(RegularExtractor<Integer> extractor) {
+        this.table = PrimitiveClassTable.forInts(extractor.getParts());
+        this.extractor = extractor.withClassifier(table);
+    }
+
+    /**
+     * Builds an int extractor for a sequence of languages.
+     *
+     * @param parts the languages which make the sequence.
+     * @see RegularExtractor#RegularExtractor(java.util.List)
+     */
+    public IntRegularExtractor(List<RegularLanguageIF<Integer>> parts) {
+        this(new RegularExtractor<>(parts));
+    }
+
+    /**
+     * Repeatedly search for matches of the regular language in an array.
+     *
+     * @param text
+     * @return
+     * @see RegularExtractor#search(java.util.List)
+     */
+    public List<MatchResult> search(int[] text) {
+        return search(text, 0);
+    }
+
+    /**
+     * Search matches in an array, with a max length constraint.
+     *
+     * @param text
+     * @param maxLength
+     * @return
+     * @see RegularExtractor#search(java.util.List, int)
+     */
+    public List<MatchResult> search(int[] text, int maxLength) {
+        return extractor.search(input(text), maxLength);
+    }
+
+    /**
+     * @param text
+     * @return
+     * @see RegularExtractor#recognizesBeginning(java.util.List)
+     */
+    public Optional<List<Integer>> recognizesBeginning(int[] text) {
+        return extractor.recognizesBeginning(input(text));
+    }
+
+    /**
+     * @param text
+     * @return
+     * @see RegularExtractor#recognizesAll(java.util.List)
+     */
+    public Optional<List<Integer>> recognizesAll(int[] text) {
+        return extractor.recognizesAll(input(text));
+    }
+
+    /**
+     * @return the statistics of the transition caches.
+     * @see RegularExtractor#getCacheStatistics()
+     */
+    public CacheStatistics getCacheStatistics() {
+        return extractor.getCacheStatistics();
+    }
+
+    private TokenInput<Integer> input(int[] text) {
+        return new TokenInput<Integer>() {
+            @Override
+            public int size() {
+                return text.length;
+            }
+
+            @Override
+            public Integer get(int pos) {
+                return text[pos];
+            }
+
+            @Override
+            public boolean hasCodes() {
+                return true;
+            }
+
+            @Override
+            public int code(int pos) {
+                return text[pos];
+            }
+
+            @Override
+            public LazyDFA.Transition<Integer> next(LazyDFA<Integer> dfa, LazyDFA.State<Integer> state, int pos) {
+                int c = text[pos];
+                int tokenClass = table.classOf(c);
+                LazyDFA.Transition<Integer> transition = dfa.cachedTransition(state, tokenClass);
+                if (transition == null) {
+                    transition = dfa.next(state, tokenClass, c);
+                }
+                return transition;
+            }
+        };
+    }
+}
@@ -4,95 +4,50 @@ import java.util.*;
 
 /**
  * An intersection language represents an intersection of languages.
- * 
+ *
  * @author Serge Rosmorduc (serge.rosmorduc@qenherkhopeshef.org)
  * @param <T> token type.
  */
 class IntersectionLanguage<T> extends
 		CompositeLanguage<T> {
 
+	private final StateTable<List<Set<MultiStateIF<T>>>, IntersectionState> table = new StateTable<>();
+
 	public IntersectionLanguage(List<? extends RegularLanguageIF<T>> children) {
 		super(children);
 	}
 
-        @Override
-	public Set<? extends MultiStateIF<T>> getInitialStates() {
-		Set<IntersectionState> result;
-		// Build all possible combinations of children states.
-		// First build all possible states...
-		ArrayList<ArrayList<MultiStateIF<T>>> allStates = new ArrayList<>();
-		for (int i = 0; i < getChildren().size(); i++) {
-			allStates.add(new ArrayList<>(getChildren().get(i)
-					.getInitialStates()));
-		}
-		result = combineStates(allStates);
-		return result;
-	}
-
 	/**
-	 * Returns a cross product combination of all states.
-	 * <p>
-	 * We may wish to use a different system in the future.
-	 * 
-	 * @param result
-	 * @param allStates
+	 * Returns the canonical state for a list of children state sets.
 	 */
-	private Set<IntersectionState> combineStates(
-			ArrayList<ArrayList<MultiStateIF<T>>> allStates) {
-		Set<IntersectionState> result = new HashSet<>();
-		// Special case : if one of the state list is emptySequence, return an emptySequence
-		// result for the combination
-		for (int i = 0; i < allStates.size(); i++) {
-			if (allStates.get(i).isEmpty())
-				return result;
-		}
-		// There is at least one state for each child... we can combine them.
-		// Combine the states...
-		int[] indexes = new int[getChildren().size()];
-		while (notLastIndex(indexes, allStates)) {
-			ArrayList<MultiStateIF<T>> newChildState = new ArrayList<>();
-			for (int i = 0; i < indexes.length; i++) {
-				newChildState.add(allStates.get(i).get(indexes[i]));				
-			}
-			result.add(new IntersectionState(newChildState));
-			nextIndex(indexes, allStates);
+	private IntersectionState state(List<Set<MultiStateIF<T>>> childrenStates) {
+		IntersectionState result = table.get(childrenStates);
+		if (result == null) {
+			result = table.intern(childrenStates, new IntersectionState(childrenStates));
 		}
 		return result;
 	}
 
-	private void nextIndex(int[] indexes,
-			ArrayList<ArrayList<MultiStateIF<T>>> allStates) {
-		// The idea is to generate the sequence :
-		// 0 0 1 / 0 0 2 ... 0 0 n-1/0 1 0/0 1 1/...
-		// that is : we find the rightmost place which is not at the top value,
-		// and we increment it.
-		// at that point, all values to the right of this one are set to 0.
-		// if everything is at top value, let the indexes be [n,0...0]
-		int i = indexes.length - 1;
-		while (i >= 0 && indexes[i] >= allStates.get(i).size() - 1) {
-			i--;
-		}
-		if (i == -1) {
-			// Last value...
-			Arrays.fill(indexes, 0);
-			indexes[0] = allStates.get(0).size();
-		} else {
-			// value i can be incremented :
-			indexes[i]++;
-			Arrays.fill(indexes, i + 1, indexes.length, 0);
+        @Override
+	public Set<? extends MultiStateIF<T>> getInitialStates() {
+		List<Set<MultiStateIF<T>>> childrenStates = new ArrayList<>(getChildren().size());
+		for (RegularLanguageIF<T> child : getChildren()) {
+			Set<MultiStateIF<T>> s = new HashSet<>();
+			for (MultiStateIF<T> childState : child.getInitialStates()) {
+				if (!childState.isDead()) {
+					s.add(childState);
+				}
+			}
+			if (s.isEmpty()) {
+				return Collections.emptySet();
+			}
+			childrenStates.add(s);
 		}
-	}
-
-	private boolean notLastIndex(int[] indexes,
-			ArrayList<ArrayList<MultiStateIF<T>>> allStates) {
-		return indexes[0] != allStates.get(0).size();
+		return Collections.singleton(state(childrenStates));
 	}
 
 	/**
-	 * An intersection state is an "AND" between intersection states in the
-	 * children.
-	 * <p>
-	 * Potentially, this is a place where problems can happen.
+	 * An intersection state is an "AND" between the states of the children.
 	 * <p>
 	 * We have two solutions :
 	 * <h3>First solution</h3>
@@ -104,43 +59,61 @@ class IntersectionLanguage<T> extends
 	 * <h3>Second solution</h3>
 	 * <p>
 	 * keep all states in the intersection state. That is, for each child
-	 * language, we have a set of possible states. Then, the result would be a
-	 * large state, yet smaller than the cross product for the first solution.
-	 * <p>
-	 * The problem is that, in this case, we might miss some identical states.
-	 * Two different Union state can overlap, and we miss this information.
+	 * language, we have a set of possible states. Then, the result is a
+	 * single state, and its size is n+m instead of n*m.
 	 * <p>
-	 * ok, we are going to use the first option (a smart solution would be to
-	 * swap between the two solutions depending on the number of results ?)
-	 * 
+	 * We use the second solution. Each child set evolves independently ; the
+	 * state is terminal iff each set contains a terminal state, and the
+	 * intersection dies as soon as one of the sets becomes empty.
+	 *
 	 * @author Serge Rosmorduc (serge.rosmorduc@qenherkhopeshef.org)
-	 * 
+	 *
 	 */
 	class IntersectionState extends AbstractMultiState<T> {
 
-		private final List<MultiStateIF<T>> childrenStates;
+		private final List<Set<MultiStateIF<T>>> childrenStates;
+		private final int hash;
+		private final boolean universal;
 
-		public IntersectionState(List<MultiStateIF<T>> childrenStates) {
+		public IntersectionState(List<Set<MultiStateIF<T>>> childrenStates) {
 			super(true);
 			this.childrenStates = childrenStates;
-			for (MultiStateIF<T> c : childrenStates) {
-				if (!c.isTerminal())
+			this.hash = childrenStates.hashCode() + 31 * IntersectionLanguage.this.hashCode();
+			boolean allUniversal = true;
+			for (Set<MultiStateIF<T>> c : childrenStates) {
+				if (!containsTerminal(c)) {
 					terminal = false;
+				}
+				if (!containsUniversal(c)) {
+					allUniversal = false;
+				}
 			}
+			this.universal = allUniversal;
+		}
+
+		@Override
+		public boolean isUniversal() {
+			return universal;
 		}
 
                 @Override
 		public Set<IntersectionState> accept(T token) {
-			Set<IntersectionState> result ;
-			// Build all possible combinations of children states.
-			// First build all possible states...
-			ArrayList<ArrayList<MultiStateIF<T>>> allStates = new ArrayList<>();
-			for (int i = 0; i < childrenStates.size(); i++) {
-				allStates.add(new ArrayList<>(childrenStates
-						.get(i).accept(token)));
+			List<Set<MultiStateIF<T>>> next = new ArrayList<>(childrenStates.size());
+			for (Set<MultiStateIF<T>> c : childrenStates) {
+				Set<MultiStateIF<T>> s = new HashSet<>();
+				for (MultiStateIF<T> childState : c) {
+					for (MultiStateIF<T> n : childState.accept(token)) {
+						if (!n.isDead()) {
+							s.add(n);
+						}
+					}
+				}
+				if (s.isEmpty()) {
+					return Collections.emptySet();
+				}
+				next.add(s);
 			}
-			result = combineStates(allStates);
-			return result;
+			return Collections.singleton(state(next));
 		}
 
 		public RegularLanguageIF<T> getParent() {
@@ -150,9 +123,11 @@ class IntersectionLanguage<T> extends
 		@SuppressWarnings("unchecked")
 		@Override
 		public boolean equals(Object obj) {
-			if (obj instanceof IntersectionLanguage.IntersectionState) {
+			if (obj == this) {
+				return true;
+			} else if (obj instanceof IntersectionLanguage.IntersectionState) {
 				IntersectionState state = (IntersectionState) obj;
-				if (!this.getParent().equals(state.getParent()))
+				if (this.hash != state.hash || !this.getParent().equals(state.getParent()))
 					return false;
 				else {
 					boolean result = childrenStates.equals(state.childrenStates);
@@ -164,7 +139,7 @@ class IntersectionLanguage<T> extends
 
 		@Override
 		public int hashCode() {
-			return childrenStates.hashCode() + 31 * getParent().hashCode();
+			return hash;
 		}
 
 		@Override
@@ -173,6 +148,24 @@ class IntersectionLanguage<T> extends
 		}
 	}
 
+	private static boolean containsTerminal(Set<? extends MultiStateIF<?>> states) {
+		for (MultiStateIF<?> s : states) {
+			if (s.isTerminal()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean containsUniversal(Set<? extends MultiStateIF<?>> states) {
+		for (MultiStateIF<?> s : states) {
+			if (s.isUniversal()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	@Override
 	public String toString() {
 		return "[Intersection " + getChildren() + "]";
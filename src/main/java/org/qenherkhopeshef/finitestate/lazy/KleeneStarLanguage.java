@@ -1,5 +1,6 @@
 package org.qenherkhopeshef.finitestate.lazy;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -14,17 +15,65 @@ class KleeneStarLanguage<T> implements
 		RegularLanguageIF<T> {
 
 	private final RegularLanguageIF<T> repeatedAutomaton;
+	/**
+	 * Canonical states ; the initial states are always terminal, and have
+	 * their own table.
+	 */
+	private final StateTable<MultiStateIF<T>, RepeatAutomatonState> initialTable = new StateTable<>();
+	private final StateTable<MultiStateIF<T>, RepeatAutomatonState> table = new StateTable<>();
+	/**
+	 * The initial states, computed on demand, as they are needed after each
+	 * repetition.
+	 */
+	private volatile Set<RepeatAutomatonState> initialStates;
+	private final int hash;
 
 	public KleeneStarLanguage(RegularLanguageIF<T> repeatedAutomaton) {
 		super();
 		this.repeatedAutomaton = repeatedAutomaton;
+		this.hash = 31 * repeatedAutomaton.hashCode() + 2;
+	}
+
+	RegularLanguageIF<T> getRepeatedLanguage() {
+		return repeatedAutomaton;
+	}
+
+	/**
+	 * Returns the canonical state for a child state.
+	 */
+	private RepeatAutomatonState state(MultiStateIF<T> childState, boolean initial) {
+		StateTable<MultiStateIF<T>, RepeatAutomatonState> t = initial ? initialTable : table;
+		RepeatAutomatonState result = t.get(childState);
+		if (result == null) {
+			result = t.intern(childState, new RepeatAutomatonState(childState, initial));
+		}
+		return result;
+	}
+
+	/**
+	 * Is the repeated language any() ?
+	 */
+	private boolean repeatsAnyToken() {
+		return repeatedAutomaton instanceof LabelLanguage
+				&& ((LabelLanguage<T>) repeatedAutomaton).getLabel() instanceof AnyTokenLabel;
 	}
 
         @Override
 	public Set<? extends MultiStateIF<T>> getInitialStates() {
-		HashSet<MultiStateIF<T>> result = new HashSet<>();
-		for (MultiStateIF<T> m : repeatedAutomaton.getInitialStates()) {
-			result.add(new RepeatAutomatonState(m, true));
+		Set<RepeatAutomatonState> result = initialStates;
+		if (result == null) {
+			HashSet<RepeatAutomatonState> states = new HashSet<>();
+			for (MultiStateIF<T> m : repeatedAutomaton.getInitialStates()) {
+				if (!m.isDead())
+					states.add(state(m, true));
+			}
+			if (states.isEmpty()) {
+				// star(l) contains the empty sequence, even when l is empty.
+				MultiStateIF<T> empty = new EmptyStringLanguage<T>().getInitialStates().iterator().next();
+				states.add(state(empty, true));
+			}
+			result = Collections.unmodifiableSet(states);
+			initialStates = result;
 		}
 		return result;
 	}
@@ -46,8 +95,28 @@ class KleeneStarLanguage<T> implements
 	 */
 	private class RepeatAutomatonState extends SingleChildState<T> {
 
-		public RepeatAutomatonState(MultiStateIF<T> childState, boolean terminal) {
-			super(childState, terminal);
+		/**
+		 * Is this one of the initial states ?
+		 */
+		private final boolean initial;
+
+		public RepeatAutomatonState(MultiStateIF<T> childState, boolean initial) {
+			super(childState, initial || childState.isTerminal());
+			this.initial = initial;
+		}
+
+		@Override
+		public boolean isDead() {
+			return !terminal && childState.isDead();
+		}
+
+		/**
+		 * Universal if the child is, or, for initial states, if each token
+		 * can be repeated (as in skip()).
+		 */
+		@Override
+		public boolean isUniversal() {
+			return childState.isUniversal() || (initial && repeatsAnyToken());
 		}
 
                 @Override
@@ -57,8 +126,9 @@ class KleeneStarLanguage<T> implements
 			// (they are always the same)
 
 			for (MultiStateIF<T> newChildstate : childState.accept(token)) {
-				result.add(new RepeatAutomatonState(newChildstate,
-						newChildstate.isTerminal()));
+				if (newChildstate.isDead())
+					continue;
+				result.add(state(newChildstate, false));
 				if (newChildstate.isTerminal() && !hasInitial) {
 					result.addAll(getInitialStates());
 					hasInitial = true;
@@ -79,6 +149,26 @@ class KleeneStarLanguage<T> implements
 		}
 	}
 	
+	/**
+	 * Two stars are equal if they repeat equal languages.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		} else if (obj == null || obj.getClass() != getClass()) {
+			return false;
+		}
+		KleeneStarLanguage<?> other = (KleeneStarLanguage<?>) obj;
+		return hash == other.hash && repeatedAutomaton.equals(other.repeatedAutomaton);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
 	public String toString() {
 		return "[STAR"+ repeatedAutomaton.toString() +"]";
 		
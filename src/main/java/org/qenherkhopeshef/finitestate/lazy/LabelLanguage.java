@@ -11,29 +11,49 @@ import java.util.Set;
  */
 class LabelLanguage<T> implements RegularLanguageIF<T> {
 	private final LazyLabelIF<T> label;
+	/**
+	 * The states of the automaton, as singleton sets, built once and for
+	 * all.
+	 */
+	private final Set<TokenAutomatonState> startSet, okSet;
+	/**
+	 * Should the results of the label be remembered during a step ?
+	 */
+	private final boolean memoized;
+	private final int hash;
 
 	public LabelLanguage(LazyLabelIF<T> label) {
 		super();
 		this.label = label;
+		this.hash = 31 * label.hashCode() + 1;
+		this.memoized = LabelMemo.isCostly(label);
+		this.startSet = Collections.singleton(new TokenAutomatonState((short) 0));
+		this.okSet = Collections.singleton(new TokenAutomatonState((short) 1));
+	}
+
+	LazyLabelIF<T> getLabel() {
+		return label;
 	}
 
 	@Override
 	public Set<? extends MultiStateIF<T>> getInitialStates() {
-		return Collections.singleton(new TokenAutomatonState((short) 0));
+		return startSet;
 	}
 
 	class TokenAutomatonState implements MultiStateIF<T> {
 
-		// This particular automaton has 3 states : 0, initial state, 1, after the label
-		// has been recognized, and 2,
-		// a token not recognized by the label was seen.
-		// possible transitions are from 0 to 1 (the label was recognized), and all
-		// other send in state 2.
-		private short state = 0;
+		// This particular automaton has 2 states : 0, initial state, 1, after the label
+		// has been recognized.
+		// The only possible transition is from 0 to 1 (the label was recognized) ;
+		// all other tokens lead to the empty set (there used to be a "bad" state 2,
+		// but it was dead).
+		private final short state;
+		private final int hash;
 
 		public TokenAutomatonState(short state) {
 			super();
 			this.state = state;
+			this.hash = LabelLanguage.this.hashCode() + 31 * state;
 		}
 
 		@Override
@@ -43,11 +63,11 @@ class LabelLanguage<T> implements RegularLanguageIF<T> {
 
 		@Override
 		public java.util.Set<? extends MultiStateIF<T>> accept(T token) {
-			short out = 2;
-			if (state == 0 && label.matches(token)) {
-				out = 1;
+			if (state == 0 && (memoized ? LabelMemo.matches(label, token) : label.matches(token))) {
+				return okSet;
+			} else {
+				return Collections.emptySet();
 			}
-			return Collections.singleton(new TokenAutomatonState(out));
 		}
 
 		@Override
@@ -57,7 +77,9 @@ class LabelLanguage<T> implements RegularLanguageIF<T> {
 
 		@Override
 		public boolean equals(Object obj) {
-			if (obj instanceof LabelLanguage.TokenAutomatonState) {
+			if (obj == this) {
+				return true;
+			} else if (obj instanceof LabelLanguage.TokenAutomatonState) {
 				// Need for wildcard '?' to avoid unchecked warning.
 				LabelLanguage<?>.TokenAutomatonState other 
 					= (LabelLanguage<?>.TokenAutomatonState) obj;
@@ -69,16 +91,35 @@ class LabelLanguage<T> implements RegularLanguageIF<T> {
 
 		@Override
 		public int hashCode() {
-			return this.getParent().hashCode() + 31 * state;
+			return hash;
 		}
 
 		@Override
 		public String toString() {
-			String[] s = { "start", "ok", "bad" };
+			String[] s = { "start", "ok" };
 			return "(label " + label.toString() + s[state] + ")";
 		}
 	}
 
+	/**
+	 * Two label languages are equal if their labels are.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		} else if (obj == null || obj.getClass() != getClass()) {
+			return false;
+		}
+		LabelLanguage<?> other = (LabelLanguage<?>) obj;
+		return hash == other.hash && label.equals(other.label);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
 	@Override
 	public String toString() {
 		return label.toString();
@@ -0,0 +1,91 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.IdentityHashMap;
+
+/**
+ * Remembers, while a token is read, the results of the labels for this token.
+ * <p>
+ * The same label may be tested many times for the same token : by several
+ * states of a set, or because it's used in several places of a language.
+ * When a step is started with {@link #begin(Object)}, each label is only
+ * evaluated once for the token, until {@link #end()}. Outside of a step, the
+ * labels are simply evaluated.</p>
+ * <p>
+ * Only labels of unknown classes are remembered ; the labels of this package
+ * are cheaper to evaluate than to look up. The memo is per thread.</p>
+ *
+ * @author rosmord
+ */
+final class LabelMemo {
+
+    private static final ThreadLocal<LabelMemo> CURRENT = ThreadLocal.withInitial(LabelMemo::new);
+
+    private final IdentityHashMap<LazyLabelIF<?>, Boolean> results = new IdentityHashMap<>();
+    private Object token;
+    private boolean active;
+
+    private LabelMemo() {
+    }
+
+    /**
+     * Starts a step for a token.
+     *
+     * @param token
+     * @return the memo, to end the step, or null if a step was already
+     * started in this thread (the inner step belongs to the outer one).
+     */
+    static LabelMemo begin(Object token) {
+        LabelMemo memo = CURRENT.get();
+        if (memo.active) {
+            return null;
+        }
+        memo.active = true;
+        memo.token = token;
+        return memo;
+    }
+
+    /**
+     * Ends the step, and forgets the results.
+     */
+    void end() {
+        active = false;
+        token = null;
+        results.clear();
+    }
+
+    /**
+     * Tests a label, using the result already computed during the current
+     * step, if any.
+     *
+     * @param <T>
+     * @param label
+     * @param token
+     * @return
+     */
+    static <T> boolean matches(LazyLabelIF<T> label, T token) {
+        LabelMemo memo = CURRENT.get();
+        if (!memo.active || memo.token != token) {
+            return label.matches(token);
+        }
+        Boolean result = memo.results.get(label);
+        if (result == null) {
+            result = label.matches(token);
+            memo.results.put(label, result);
+        }
+        return result;
+    }
+
+    /**
+     * Is a label worth remembering ?
+     *
+     * @param label
+     * @return false for the (cheap) labels of this package.
+     */
+    static boolean isCostly(LazyLabelIF<?> label) {
+        // Public label classes may be subclassed : test the exact class.
+        Class<?> c = label.getClass();
+        return c != SimpleLabel.class && c != SetLabel.class && c != ComplementSetLabel.class
+                && c != RangeLabel.class && c != OutOfRangeLabel.class && c != AnyTokenLabel.class
+                && c != BitSetLabel.class && c != DispatchLabel.class;
+    }
+}
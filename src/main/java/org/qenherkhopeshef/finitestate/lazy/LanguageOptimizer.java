@@ -0,0 +1,415 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rewrites a language into a simpler, equivalent one.
+ * <p>
+ * The languages built by the factory are often redundant : plus(l) is
+ * seq(l, star(l)), opt() adds empty sequences to unions, sequences and unions
+ * are nested... The optimizer :</p>
+ * <ul>
+ * <li>flattens nested sequences, unions and intersections ;</li>
+ * <li>removes the empty sequences from sequences, the empty languages from
+ * unions, and the redundant empty sequences from unions ;</li>
+ * <li>replaces l followed by star(l) with a counted repetition, which doesn't
+ * duplicate l ;</li>
+ * <li>collapses star(star(l)), star(opt(l)) and double complements ;</li>
+ * <li>merges the one-token languages of unions (see
+ * {@link RegularLanguageFactory#union(java.util.Collection)}), and the runs of
+ * exact() tokens of sequences, which become one-word lexicons ;</li>
+ * <li>merges the literal alternatives of unions into one lexicon, and factors
+ * the common prefixes of the other alternatives : a b c | a b d | a x becomes
+ * a (b (c | d) | x), and a, then b, are only followed by one state.</li>
+ * </ul>
+ * <p>
+ * Equal sub-languages (see the equals methods of the languages) become one
+ * shared node, so that their states are shared too : each call to skip()
+ * creates a new language, but all skip() of a pattern end up as the same
+ * object. Determinized languages and unknown languages are kept as they
+ * are.</p>
+ *
+ * @author rosmord
+ * @param <T> the token type.
+ */
+final class LanguageOptimizer<T> implements LanguageVisitor<T, RegularLanguageIF<T>> {
+
+    private final IdentityHashMap<RegularLanguageIF<T>, RegularLanguageIF<T>> optimized = new IdentityHashMap<>();
+    /**
+     * The canonical instance of each optimized language.
+     */
+    private final HashMap<RegularLanguageIF<T>, RegularLanguageIF<T>> shared = new HashMap<>();
+
+    private LanguageOptimizer() {
+    }
+
+    /**
+     * Optimizes a language.
+     *
+     * @param <T>
+     * @param l
+     * @return an equivalent language (possibly l itself).
+     */
+    static <T> RegularLanguageIF<T> optimize(RegularLanguageIF<T> l) {
+        return new LanguageOptimizer<T>().optimizeChild(l);
+    }
+
+    /**
+     * Optimizes the parts of an extractor, sharing what they share.
+     *
+     * @param <T>
+     * @param parts
+     * @return the optimized parts.
+     */
+    static <T> List<RegularLanguageIF<T>> optimizeParts(List<RegularLanguageIF<T>> parts) {
+        return new LanguageOptimizer<T>().optimizeAll(parts);
+    }
+
+    private RegularLanguageIF<T> optimizeChild(RegularLanguageIF<T> l) {
+        RegularLanguageIF<T> result = optimized.get(l);
+        if (result == null) {
+            // The visitor would see through determinized languages.
+            result = l instanceof DeterminizedLanguage ? l : visit(l);
+            result = share(result);
+            optimized.put(l, result);
+            // Optimized languages are not optimized again.
+            optimized.putIfAbsent(result, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the canonical instance of a language whose children are
+     * canonical.
+     */
+    private RegularLanguageIF<T> share(RegularLanguageIF<T> l) {
+        RegularLanguageIF<T> previous = shared.putIfAbsent(l, l);
+        return previous != null ? previous : l;
+    }
+
+    private List<RegularLanguageIF<T>> optimizeAll(List<RegularLanguageIF<T>> children) {
+        List<RegularLanguageIF<T>> result = new ArrayList<>(children.size());
+        for (RegularLanguageIF<T> child : children) {
+            result.add(optimizeChild(child));
+        }
+        return result;
+    }
+
+    private static <T> boolean acceptsEmpty(RegularLanguageIF<T> l) {
+        for (MultiStateIF<T> s : l.getInitialStates()) {
+            if (s.isTerminal()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the tokens of l to word, if l recognizes exactly one word.
+     *
+     * @return false if l is not an exact token or a one-word lexicon.
+     */
+    private static <T> boolean addExactWord(RegularLanguageIF<T> l, List<T> word) {
+        if (l instanceof LabelLanguage && ((LabelLanguage<T>) l).getLabel().getClass() == SimpleLabel.class) {
+            word.add(((SimpleLabel<T>) ((LabelLanguage<T>) l).getLabel()).getToken());
+            return true;
+        } else if (l instanceof LexiconLanguage && ((LexiconLanguage<T>) l).getSize() == 1) {
+            word.addAll(((LexiconLanguage<T>) l).getWords().get(0));
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public RegularLanguageIF<T> visitLabel(LabelLanguage<T> l) {
+        return l;
+    }
+
+    @Override
+    public RegularLanguageIF<T> visitSequence(SequenceLanguage<T> l) {
+        List<RegularLanguageIF<T>> children = new ArrayList<>();
+        for (RegularLanguageIF<T> child : optimizeAll(l.getChildren())) {
+            if (child instanceof SequenceLanguage) {
+                children.addAll(((SequenceLanguage<T>) child).getChildren());
+            } else if (child instanceof EmptyLanguage) {
+                return child;
+            } else if (!(child instanceof EmptyStringLanguage)) {
+                children.add(child);
+            }
+        }
+        // l star(l) -> l{1,}, and star(l) star(l) -> star(l).
+        List<RegularLanguageIF<T>> merged = new ArrayList<>();
+        for (RegularLanguageIF<T> child : children) {
+            RegularLanguageIF<T> last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (child instanceof KleeneStarLanguage && last != null
+                    && ((KleeneStarLanguage<T>) child).getRepeatedLanguage().equals(last)) {
+                merged.set(merged.size() - 1, share(new RepeatLanguage<>(last, 1, RepeatLanguage.UNBOUNDED)));
+            } else if (child instanceof KleeneStarLanguage && child.equals(last)) {
+                // Nothing to add.
+            } else {
+                merged.add(child);
+            }
+        }
+        // Runs of exact tokens -> one-word lexicons. The runs of nested
+        // sequences have already been merged.
+        List<RegularLanguageIF<T>> result = new ArrayList<>();
+        int i = 0;
+        while (i < merged.size()) {
+            List<T> word = new ArrayList<>();
+            int j = i;
+            while (j < merged.size() && addExactWord(merged.get(j), word)) {
+                j++;
+            }
+            if (j - i >= 2) {
+                result.add(share(new LexiconLanguage<>(Collections.singletonList(word))));
+                i = j;
+            } else {
+                result.add(merged.get(i));
+                i++;
+            }
+        }
+        if (result.isEmpty()) {
+            return new EmptyStringLanguage<>();
+        } else if (result.size() == 1) {
+            return result.get(0);
+        } else {
+            return new SequenceLanguage<>(result);
+        }
+    }
+
+    @Override
+    public RegularLanguageIF<T> visitUnion(UnionLanguage<T> l) {
+        // Large unions are common (lists of phrases) : a set avoids quadratic
+        // duplicate checks.
+        LinkedHashSet<RegularLanguageIF<T>> alternatives = new LinkedHashSet<>();
+        RegularLanguageIF<T> emptySequence = null;
+        boolean acceptsEmpty = false;
+        for (RegularLanguageIF<T> child : flattenUnion(optimizeAll(l.getChildren()))) {
+            if (child instanceof EmptyLanguage) {
+                continue;
+            } else if (child instanceof EmptyStringLanguage) {
+                emptySequence = child;
+            } else if (alternatives.add(child)) {
+                acceptsEmpty = acceptsEmpty || acceptsEmpty(child);
+            }
+        }
+        List<RegularLanguageIF<T>> children = factorPrefixes(mergeLiterals(new ArrayList<>(alternatives)));
+        // The empty sequence is only needed if no other child accepts it.
+        if (emptySequence != null && !acceptsEmpty) {
+            children.add(0, emptySequence);
+        }
+        if (children.isEmpty()) {
+            return new EmptyLanguage<>();
+        } else if (children.size() == 1) {
+            return children.get(0);
+        } else {
+            return RegularLanguageFactory.union(children);
+        }
+    }
+
+    /**
+     * Merges the literal alternatives of a union into one lexicon, if at
+     * least one of them is a lexicon (the exact() tokens alone are better
+     * merged by {@link RegularLanguageFactory#union(java.util.Collection)}).
+     */
+    private List<RegularLanguageIF<T>> mergeLiterals(List<RegularLanguageIF<T>> alternatives) {
+        List<List<T>> words = new ArrayList<>();
+        List<RegularLanguageIF<T>> others = new ArrayList<>();
+        int lexicons = 0;
+        for (RegularLanguageIF<T> alternative : alternatives) {
+            List<T> word = new ArrayList<>();
+            if (alternative instanceof LexiconLanguage) {
+                words.addAll(((LexiconLanguage<T>) alternative).getWords());
+                lexicons++;
+            } else if (addExactWord(alternative, word)) {
+                words.add(word);
+            } else {
+                others.add(alternative);
+            }
+        }
+        if (lexicons == 0 || others.size() + 1 == alternatives.size()) {
+            return alternatives;
+        }
+        others.add(0, share(new LexiconLanguage<>(words)));
+        return others;
+    }
+
+    /**
+     * Factors the common first elements of the alternatives of a union.
+     * <p>
+     * The alternatives which start with the same language are replaced by a
+     * sequence of this language and of the (factored) union of what follows.
+     * One-word lexicons are seen as sequences of exact tokens, so that they
+     * can share a part of their words.</p>
+     */
+    private List<RegularLanguageIF<T>> factorPrefixes(List<RegularLanguageIF<T>> alternatives) {
+        LinkedHashMap<RegularLanguageIF<T>, List<RegularLanguageIF<T>>> groups = new LinkedHashMap<>();
+        for (RegularLanguageIF<T> alternative : alternatives) {
+            List<RegularLanguageIF<T>> elements = elements(alternative);
+            RegularLanguageIF<T> first = elements.isEmpty() ? alternative : elements.get(0);
+            groups.computeIfAbsent(first, k -> new ArrayList<>()).add(alternative);
+        }
+        if (groups.size() == alternatives.size()) {
+            return alternatives;
+        }
+        List<RegularLanguageIF<T>> result = new ArrayList<>();
+        for (Map.Entry<RegularLanguageIF<T>, List<RegularLanguageIF<T>>> group : groups.entrySet()) {
+            if (group.getValue().size() == 1) {
+                result.add(group.getValue().get(0));
+            } else {
+                List<RegularLanguageIF<T>> tails = new ArrayList<>();
+                for (RegularLanguageIF<T> alternative : group.getValue()) {
+                    List<RegularLanguageIF<T>> elements = elements(alternative);
+                    tails.add(sequence(elements.subList(1, elements.size())));
+                }
+                RegularLanguageIF<T> tail = optimizeChild(new UnionLanguage<>(tails));
+                result.add(optimizeChild(new SequenceLanguage<>(Arrays.asList(group.getKey(), tail))));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The elements of a sequence, the tokens of a one-word lexicon, or the
+     * language itself.
+     */
+    private List<RegularLanguageIF<T>> elements(RegularLanguageIF<T> l) {
+        List<RegularLanguageIF<T>> result = new ArrayList<>();
+        List<RegularLanguageIF<T>> children = l instanceof SequenceLanguage
+                ? ((SequenceLanguage<T>) l).getChildren() : Collections.singletonList(l);
+        for (RegularLanguageIF<T> child : children) {
+            if (child instanceof LexiconLanguage && ((LexiconLanguage<T>) child).getSize() == 1) {
+                for (T token : ((LexiconLanguage<T>) child).getWords().get(0)) {
+                    result.add(share(new LabelLanguage<>(new SimpleLabel<>(token))));
+                }
+            } else {
+                result.add(child);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The optimized sequence of some elements.
+     */
+    private RegularLanguageIF<T> sequence(List<RegularLanguageIF<T>> elements) {
+        if (elements.isEmpty()) {
+            return share(new EmptyStringLanguage<>());
+        } else if (elements.size() == 1) {
+            return elements.get(0);
+        } else {
+            return optimizeChild(new SequenceLanguage<>(elements));
+        }
+    }
+
+    private List<RegularLanguageIF<T>> flattenUnion(List<RegularLanguageIF<T>> children) {
+        List<RegularLanguageIF<T>> result = new ArrayList<>();
+        for (RegularLanguageIF<T> child : children) {
+            if (child instanceof UnionLanguage) {
+                result.addAll(((UnionLanguage<T>) child).getChildren());
+            } else {
+                result.add(child);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public RegularLanguageIF<T> visitIntersection(IntersectionLanguage<T> l) {
+        List<RegularLanguageIF<T>> children = new ArrayList<>();
+        for (RegularLanguageIF<T> child : optimizeAll(l.getChildren())) {
+            if (child instanceof EmptyLanguage) {
+                return child;
+            } else if (child instanceof IntersectionLanguage) {
+                children.addAll(((IntersectionLanguage<T>) child).getChildren());
+            } else if (!children.contains(child)) {
+                children.add(child);
+            }
+        }
+        return children.size() == 1 ? children.get(0) : new IntersectionLanguage<>(children);
+    }
+
+    @Override
+    public RegularLanguageIF<T> visitStar(KleeneStarLanguage<T> l) {
+        RegularLanguageIF<T> child = optimizeChild(l.getRepeatedLanguage());
+        RegularLanguageIF<T> result = simplifyStar(child);
+        if (result != null) {
+            return result;
+        }
+        return child == l.getRepeatedLanguage() ? l : new KleeneStarLanguage<>(child);
+    }
+
+    /**
+     * Simplifies the star of an optimized language.
+     *
+     * @return the simplified language, or null if there is nothing to do.
+     */
+    private RegularLanguageIF<T> simplifyStar(RegularLanguageIF<T> child) {
+        if (child instanceof EmptyLanguage || child instanceof EmptyStringLanguage) {
+            return new EmptyStringLanguage<>();
+        } else if (child instanceof KleeneStarLanguage) {
+            return child;
+        } else if (child instanceof UnionLanguage) {
+            // In a star, the empty sequence is useless.
+            List<RegularLanguageIF<T>> alternatives = new ArrayList<>();
+            for (RegularLanguageIF<T> c : ((UnionLanguage<T>) child).getChildren()) {
+                if (!(c instanceof EmptyStringLanguage)) {
+                    alternatives.add(c);
+                }
+            }
+            if (alternatives.size() == 1) {
+                RegularLanguageIF<T> result = simplifyStar(alternatives.get(0));
+                return result != null ? result : new KleeneStarLanguage<>(alternatives.get(0));
+            } else if (alternatives.size() < ((UnionLanguage<T>) child).getChildren().size()) {
+                return new KleeneStarLanguage<>(share(RegularLanguageFactory.union(alternatives)));
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public RegularLanguageIF<T> visitComplement(ComplementLanguage<T> l) {
+        RegularLanguageIF<T> child = optimizeChild(l.getComplemented());
+        if (child instanceof ComplementLanguage) {
+            return ((ComplementLanguage<T>) child).getComplemented();
+        }
+        return child == l.getComplemented() ? l : new ComplementLanguage<>(child);
+    }
+
+    @Override
+    public RegularLanguageIF<T> visitRepeat(RepeatLanguage<T> l) {
+        RegularLanguageIF<T> child = optimizeChild(l.getRepeatedLanguage());
+        if (l.getMin() == 1 && l.getMax() == 1) {
+            return child;
+        }
+        return child == l.getRepeatedLanguage() ? l : new RepeatLanguage<>(child, l.getMin(), l.getMax());
+    }
+
+    @Override
+    public RegularLanguageIF<T> visitLexicon(LexiconLanguage<T> l) {
+        return l;
+    }
+
+    @Override
+    public RegularLanguageIF<T> visitEmptyLanguage(EmptyLanguage<T> l) {
+        return l;
+    }
+
+    @Override
+    public RegularLanguageIF<T> visitEmptySequence(EmptyStringLanguage<T> l) {
+        return l;
+    }
+
+    @Override
+    public RegularLanguageIF<T> visitOther(RegularLanguageIF<T> l) {
+        return l;
+    }
+}
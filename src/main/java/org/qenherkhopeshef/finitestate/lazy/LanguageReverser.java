@@ -0,0 +1,134 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Builds the reverse of a language, that is, the language of its words read
+ * backwards.
+ * <p>
+ * Sequences are reversed ; the other operations (union, intersection, star,
+ * complement, repetitions) are simply applied to the reversed children, and
+ * labels are kept. Sub-languages which appear more than once are only
+ * reversed once.</p>
+ *
+ * @author rosmord
+ * @param <T> the token type.
+ */
+final class LanguageReverser<T> implements LanguageVisitor<T, RegularLanguageIF<T>> {
+
+    private final IdentityHashMap<RegularLanguageIF<T>, RegularLanguageIF<T>> reversed = new IdentityHashMap<>();
+
+    private LanguageReverser() {
+    }
+
+    /**
+     * Reverses a language.
+     *
+     * @param <T>
+     * @param l
+     * @return the reversed language, or null if some part of l is unknown.
+     */
+    static <T> RegularLanguageIF<T> reverse(RegularLanguageIF<T> l) {
+        return new LanguageReverser<T>().reverseChild(l);
+    }
+
+    private RegularLanguageIF<T> reverseChild(RegularLanguageIF<T> l) {
+        RegularLanguageIF<T> result = reversed.get(l);
+        if (result == null) {
+            result = visit(l);
+            if (result != null) {
+                reversed.put(l, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reverses a list of languages, one by one.
+     *
+     * @return the list, or null if one of them can't be reversed.
+     */
+    private List<RegularLanguageIF<T>> reverseAll(List<RegularLanguageIF<T>> children) {
+        List<RegularLanguageIF<T>> result = new ArrayList<>(children.size());
+        for (RegularLanguageIF<T> child : children) {
+            RegularLanguageIF<T> r = reverseChild(child);
+            if (r == null) {
+                return null;
+            }
+            result.add(r);
+        }
+        return result;
+    }
+
+    @Override
+    public RegularLanguageIF<T> visitLabel(LabelLanguage<T> l) {
+        return l;
+    }
+
+    @Override
+    public RegularLanguageIF<T> visitSequence(SequenceLanguage<T> l) {
+        List<RegularLanguageIF<T>> children = reverseAll(l.getChildren());
+        if (children == null) {
+            return null;
+        }
+        Collections.reverse(children);
+        return new SequenceLanguage<>(children);
+    }
+
+    @Override
+    public RegularLanguageIF<T> visitUnion(UnionLanguage<T> l) {
+        List<RegularLanguageIF<T>> children = reverseAll(l.getChildren());
+        return children == null ? null : new UnionLanguage<>(children);
+    }
+
+    @Override
+    public RegularLanguageIF<T> visitIntersection(IntersectionLanguage<T> l) {
+        List<RegularLanguageIF<T>> children = reverseAll(l.getChildren());
+        return children == null ? null : new IntersectionLanguage<>(children);
+    }
+
+    @Override
+    public RegularLanguageIF<T> visitStar(KleeneStarLanguage<T> l) {
+        RegularLanguageIF<T> child = reverseChild(l.getRepeatedLanguage());
+        return child == null ? null : new KleeneStarLanguage<>(child);
+    }
+
+    @Override
+    public RegularLanguageIF<T> visitComplement(ComplementLanguage<T> l) {
+        RegularLanguageIF<T> child = reverseChild(l.getComplemented());
+        return child == null ? null : new ComplementLanguage<>(child);
+    }
+
+    @Override
+    public RegularLanguageIF<T> visitRepeat(RepeatLanguage<T> l) {
+        RegularLanguageIF<T> child = reverseChild(l.getRepeatedLanguage());
+        return child == null ? null : new RepeatLanguage<>(child, l.getMin(), l.getMax());
+    }
+
+    @Override
+    public RegularLanguageIF<T> visitLexicon(LexiconLanguage<T> l) {
+        List<List<T>> words = l.getWords();
+        for (List<T> word : words) {
+            Collections.reverse(word);
+        }
+        return new LexiconLanguage<>(words);
+    }
+
+    @Override
+    public RegularLanguageIF<T> visitEmptyLanguage(EmptyLanguage<T> l) {
+        return l;
+    }
+
+    @Override
+    public RegularLanguageIF<T> visitEmptySequence(EmptyStringLanguage<T> l) {
+        return l;
+    }
+
+    @Override
+    public RegularLanguageIF<T> visitOther(RegularLanguageIF<T> l) {
+        return null;
+    }
+}
@@ -0,0 +1,79 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+/**
+ * A visitor over the structure of a language.
+ * <p>
+ * {@link RegularLanguageIF} is a public interface, and its implementations are
+ * package-private ; hence, instead of an <code>accept</code> method in each
+ * language, the dispatch is done once and for all by
+ * {@link #visit(RegularLanguageIF)}. Determinized languages are transparent :
+ * the visitor sees the language they wrap.</p>
+ *
+ * @author rosmord
+ * @param <T> the token type.
+ * @param <R> the result type.
+ */
+interface LanguageVisitor<T, R> {
+
+    R visitLabel(LabelLanguage<T> l);
+
+    R visitSequence(SequenceLanguage<T> l);
+
+    R visitUnion(UnionLanguage<T> l);
+
+    R visitIntersection(IntersectionLanguage<T> l);
+
+    R visitStar(KleeneStarLanguage<T> l);
+
+    R visitComplement(ComplementLanguage<T> l);
+
+    R visitRepeat(RepeatLanguage<T> l);
+
+    R visitLexicon(LexiconLanguage<T> l);
+
+    R visitEmptyLanguage(EmptyLanguage<T> l);
+
+    R visitEmptySequence(EmptyStringLanguage<T> l);
+
+    /**
+     * Called for languages this visitor doesn't know about.
+     *
+     * @param l
+     * @return
+     */
+    R visitOther(RegularLanguageIF<T> l);
+
+    /**
+     * Dispatches l to the corresponding method.
+     *
+     * @param l
+     * @return
+     */
+    default R visit(RegularLanguageIF<T> l) {
+        if (l instanceof LabelLanguage) {
+            return visitLabel((LabelLanguage<T>) l);
+        } else if (l instanceof SequenceLanguage) {
+            return visitSequence((SequenceLanguage<T>) l);
+        } else if (l instanceof UnionLanguage) {
+            return visitUnion((UnionLanguage<T>) l);
+        } else if (l instanceof IntersectionLanguage) {
+            return visitIntersection((IntersectionLanguage<T>) l);
+        } else if (l instanceof KleeneStarLanguage) {
+            return visitStar((KleeneStarLanguage<T>) l);
+        } else if (l instanceof ComplementLanguage) {
+            return visitComplement((ComplementLanguage<T>) l);
+        } else if (l instanceof RepeatLanguage) {
+            return visitRepeat((RepeatLanguage<T>) l);
+        } else if (l instanceof LexiconLanguage) {
+            return visitLexicon((LexiconLanguage<T>) l);
+        } else if (l instanceof EmptyLanguage) {
+            return visitEmptyLanguage((EmptyLanguage<T>) l);
+        } else if (l instanceof EmptyStringLanguage) {
+            return visitEmptySequence((EmptyStringLanguage<T>) l);
+        } else if (l instanceof DeterminizedLanguage) {
+            return visit(((DeterminizedLanguage<T>) l).getLanguage());
+        } else {
+            return visitOther(l);
+        }
+    }
+}
@@ -0,0 +1,658 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lazy determinization of a language, with memoized transitions.
+ * <p>
+ * When reading a text, the library computes, for each token, the set of all
+ * {@link MultiStateIF} reachable so far. Those sets are the states of the
+ * (implicit) deterministic automaton for the language. Without a cache, they
+ * are rebuilt for each token, even though a long text usually cycles through
+ * a small number of distinct sets.</p>
+ * <p>
+ * A LazyDFA <em>interns</em> each set it meets as a numbered {@link State},
+ * and remembers, for each state and each token, the resulting
+ * {@link Transition}. In the steady state, reading a token is then a simple
+ * table lookup. This is the technique used by RE2.</p>
+ * <p>
+ * Alongside its target, each transition keeps its <em>edges</em>, that is,
+ * which member of the source state leads to which member of the target state.
+ * They are used by {@link ReportingLanguageRecognizer} to keep track of
+ * markers.</p>
+ * <p>
+ * If a {@link TokenClassifier} is supplied, transitions are cached per token
+ * class rather than per token, in an array indexed by the class number (or,
+ * for large class numbers, in a map).</p>
+ * <p>
+ * The cache is limited by a {@link CacheBudget}. When it is exceeded, states
+ * are evicted (all at once, or the least recently used first), and will be
+ * computed again if needed. The states in use by the current step are never
+ * evicted, so the budget can be briefly exceeded by them.</p>
+ * <p>
+ * A LazyDFA can also be built with caching disabled. It will then compute a
+ * fresh transition for each token, which is the behaviour of the plain
+ * recognizers.</p>
+ * <p>
+ * A LazyDFA is <strong>not</strong> thread safe. Languages are, so each
+ * thread should simply use its own cache.</p>
+ *
+ * @author rosmord
+ * @param <T> the token type.
+ */
+class LazyDFA<T> {
+
+    /**
+     * Approximate cost of a state, without its members: the object itself, its
+     * member array and its maps.
+     */
+    private static final long STATE_BYTES = 160;
+    /**
+     * Approximate cost of one member of a state: array slot, map entry and
+     * boxed index.
+     */
+    private static final long MEMBER_BYTES = 64;
+    /**
+     * Approximate cost of a transition, without its edges.
+     */
+    private static final long TRANSITION_BYTES = 96;
+    private static final long EDGE_BYTES = 8;
+    /**
+     * Cost of an entry in a per-class transition table.
+     */
+    private static final long SLOT_BYTES = 4;
+    /**
+     * Classes from this one are not stored in an array, but in a map : the
+     * classes of large lexicons, for instance, are numerous, and a state only
+     * sees a few of them.
+     */
+    static final int MAX_DENSE_CLASS = 1024;
+    /**
+     * Cost of an entry in a map of transitions.
+     */
+    private static final long MAP_ENTRY_BYTES = 48;
+
+    private final RegularLanguageIF<T> language;
+    private final boolean caching;
+    private final CacheBudget budget;
+    private final CacheStatistics statistics;
+    private final TokenClassifier<? super T> classifier;
+    private final HashMap<Set<MultiStateIF<T>>, State<T>> states = new HashMap<>();
+    private State<T> initialState;
+    private int nextId = 0;
+    private long approximateBytes = 0;
+    /**
+     * Cached states, from the most recently used (newest) to the least
+     * recently used (oldest).
+     */
+    private State<T> newest, oldest;
+
+    /**
+     * Builds a caching lazy DFA for a language, with no limit on the cache
+     * size.
+     *
+     * @param language
+     */
+    LazyDFA(RegularLanguageIF<T> language) {
+        this(language, true);
+    }
+
+    /**
+     * Builds a lazy DFA for a language, with no limit on the cache size.
+     *
+     * @param language the language to determinize.
+     * @param caching if false, transitions are computed anew for each token.
+     */
+    LazyDFA(RegularLanguageIF<T> language, boolean caching) {
+        this(language, caching, CacheBudget.UNLIMITED, new CacheStatistics(), null);
+    }
+
+    /**
+     * Builds a caching lazy DFA for a language.
+     *
+     * @param language the language to determinize.
+     * @param budget the limits of the cache.
+     * @param statistics where to count hits, misses and evictions (may be
+     * shared between caches).
+     */
+    LazyDFA(RegularLanguageIF<T> language, CacheBudget budget, CacheStatistics statistics) {
+        this(language, true, budget, statistics, null);
+    }
+
+    /**
+     * Builds a caching lazy DFA for a language, whose transitions are cached
+     * per token class.
+     *
+     * @param language the language to determinize.
+     * @param budget the limits of the cache.
+     * @param statistics where to count hits, misses and evictions (may be
+     * shared between caches).
+     * @param classifier the token classifier, or null to cache transitions per
+     * token.
+     */
+    LazyDFA(RegularLanguageIF<T> language, CacheBudget budget, CacheStatistics statistics, TokenClassifier<? super T> classifier) {
+        this(language, true, budget, statistics, classifier);
+    }
+
+    private LazyDFA(RegularLanguageIF<T> language, boolean caching, CacheBudget budget, CacheStatistics statistics, TokenClassifier<? super T> classifier) {
+        this.language = language;
+        this.caching = caching;
+        this.budget = budget;
+        this.statistics = statistics;
+        this.classifier = classifier;
+    }
+
+    RegularLanguageIF<T> getLanguage() {
+        return language;
+    }
+
+    boolean isCaching() {
+        return caching;
+    }
+
+    CacheBudget getBudget() {
+        return budget;
+    }
+
+    CacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * The approximate size of the cache, in bytes.
+     *
+     * @return
+     */
+    long getApproximateBytes() {
+        return approximateBytes;
+    }
+
+    /**
+     * The number of states currently interned.
+     *
+     * @return
+     */
+    int size() {
+        return states.size();
+    }
+
+    /**
+     * Returns the state for the initial states of the language.
+     *
+     * @return
+     */
+    State<T> getInitialState() {
+        if (initialState == null) {
+            LinkedHashMap<MultiStateIF<T>, Integer> index = new LinkedHashMap<>();
+            for (MultiStateIF<T> s : language.getInitialStates()) {
+                if (s.isDead()) {
+                    continue;
+                }
+                index.putIfAbsent(s, index.size());
+            }
+            initialState = intern(index);
+            enforceBudget(initialState, initialState);
+        }
+        return initialState;
+    }
+
+    /**
+     * Is a state idle, that is, made only of initial states of the language,
+     * or of states of the first element of a sequence language ?
+     * <p>
+     * For a search language, whose first element is skip(), no match is in
+     * progress in an idle state : if a match started before the current
+     * position can still be found, then another match starts at this
+     * position.</p>
+     *
+     * @param state
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    boolean isIdle(State<T> state) {
+        if (state.isEvicted()) {
+            return false;
+        }
+        if (state.idle == 0) {
+            Set<? extends MultiStateIF<T>> initial = language.getInitialStates();
+            boolean idle = true;
+            for (MultiStateIF<T> member : state.members) {
+                if (!initial.contains(member)
+                        && !(member instanceof SequenceLanguage.SequenceState
+                        && ((SequenceLanguage<T>.SequenceState) member).getParent() == language
+                        && ((SequenceLanguage<T>.SequenceState) member).getChildIndex() == 0)) {
+                    idle = false;
+                    break;
+                }
+            }
+            state.idle = idle ? (byte) 1 : (byte) 2;
+        }
+        return state.idle == 1;
+    }
+
+    /**
+     * Follows a transition.
+     *
+     * @param state the current state.
+     * @param token the token read.
+     * @return the transition for token, from state.
+     */
+    Transition<T> next(State<T> state, T token) {
+        if (!caching) {
+            return computeTransition(state, token);
+        }
+        int tokenClass = -1;
+        if (classifier != null) {
+            tokenClass = classifier.classify(token);
+            if (tokenClass < 0) {
+                throw new IllegalArgumentException("negative class " + tokenClass + " for token " + token);
+            }
+        }
+        return next(state, tokenClass, token);
+    }
+
+    /**
+     * Returns the cached transition for a token class, if there is one.
+     * <p>
+     * Used by inputs of primitive values, which can classify their tokens
+     * without boxing them. If the result is null, they should call
+     * {@link #next(State, int, Object)}.</p>
+     *
+     * @param state the current state.
+     * @param tokenClass the class of the token (non-negative).
+     * @return the transition, or null.
+     */
+    Transition<T> cachedTransition(State<T> state, int tokenClass) {
+        if (!caching) {
+            return null;
+        }
+        Transition<T> transition = state.getTransition(null, tokenClass);
+        if (transition == null || transition.target.isEvicted()) {
+            return null;
+        }
+        touch(state);
+        statistics.hit();
+        return transition;
+    }
+
+    /**
+     * Follows a transition, for a token whose class is already known.
+     *
+     * @param state the current state.
+     * @param tokenClass the class of the token, or -1 if transitions are
+     * cached per token.
+     * @param token the token.
+     * @return the transition.
+     */
+    Transition<T> next(State<T> state, int tokenClass, T token) {
+        if (!caching) {
+            return computeTransition(state, token);
+        }
+        touch(state);
+        Transition<T> transition = state.getTransition(token, tokenClass);
+        if (transition != null) {
+            if (!transition.target.isEvicted()) {
+                statistics.hit();
+                return transition;
+            }
+            // Stale transition to an evicted state.
+            approximateBytes += state.putTransition(token, tokenClass, null);
+        }
+        statistics.miss();
+        transition = computeTransition(state, token);
+        approximateBytes += state.putTransition(token, tokenClass, transition);
+        enforceBudget(state, transition.target);
+        return transition;
+    }
+
+    /**
+     * Is the whole list of tokens in the language ?
+     *
+     * @param tokens
+     * @return
+     * @see RegularLanguageIF#recognize(java.util.List)
+     */
+    boolean recognize(List<T> tokens) {
+        State<T> current = getInitialState();
+        for (T token : tokens) {
+            if (current.size() == 0) {
+                // No live state left.
+                return false;
+            }
+            current = next(current, token).getTarget();
+        }
+        return current.isTerminal();
+    }
+
+    private Transition<T> computeTransition(State<T> source, T token) {
+        LinkedHashMap<MultiStateIF<T>, Integer> index = new LinkedHashMap<>();
+        List<MultiStateIF<T>> reached = new ArrayList<>();
+        List<Integer> origins = new ArrayList<>();
+        // Each label is tested once for the token, whatever the number of
+        // states which use it.
+        LabelMemo memo = LabelMemo.begin(token);
+        try {
+            for (int i = 0; i < source.size(); i++) {
+                for (MultiStateIF<T> s : source.getMember(i).accept(token)) {
+                    if (s.isDead()) {
+                        continue;
+                    }
+                    index.putIfAbsent(s, index.size());
+                    reached.add(s);
+                    origins.add(i);
+                }
+            }
+        } finally {
+            if (memo != null) {
+                memo.end();
+            }
+        }
+        State<T> target = intern(index);
+        int[] edges = new int[2 * reached.size()];
+        for (int k = 0; k < reached.size(); k++) {
+            edges[2 * k] = origins.get(k);
+            edges[2 * k + 1] = target.indexOf(reached.get(k));
+        }
+        return new Transition<>(target, edges);
+    }
+
+    /**
+     * Find the state corresponding to a set of multistates, or create it.
+     *
+     * @param index the multistates, and their respective positions.
+     * @return
+     */
+    private State<T> intern(LinkedHashMap<MultiStateIF<T>, Integer> index) {
+        State<T> result = null;
+        if (caching) {
+            result = states.get(index.keySet());
+        }
+        if (result == null) {
+            result = new State<>(nextId++, index);
+            if (caching) {
+                states.put(result.memberIndex.keySet(), result);
+                approximateBytes += result.bytes;
+                link(result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Evicts states until the cache fits in its budget.
+     *
+     * @param current the state being read, which must be kept.
+     * @param target the state reached, which must be kept.
+     */
+    private void enforceBudget(State<T> current, State<T> target) {
+        if (!overBudget()) {
+            return;
+        }
+        boolean flush = budget.getPolicy() == CacheBudget.EvictionPolicy.FLUSH;
+        State<T> s = oldest;
+        while (s != null && (flush || overBudget())) {
+            State<T> newer = s.newer;
+            if (s != current && s != target) {
+                evict(s);
+            }
+            s = newer;
+        }
+    }
+
+    private boolean overBudget() {
+        return states.size() > budget.getMaxStates()
+                || approximateBytes > budget.getMaxBytes();
+    }
+
+    private void evict(State<T> s) {
+        unlink(s);
+        states.remove(s.memberIndex.keySet());
+        approximateBytes -= s.bytes;
+        if (s == initialState) {
+            initialState = null;
+        }
+        s.release();
+        statistics.evict();
+    }
+
+    /**
+     * Marks a state as the most recently used.
+     */
+    private void touch(State<T> s) {
+        if (s != newest && budget.getPolicy() == CacheBudget.EvictionPolicy.LRU) {
+            unlink(s);
+            link(s);
+        }
+    }
+
+    private void link(State<T> s) {
+        s.older = newest;
+        s.newer = null;
+        if (newest != null) {
+            newest.newer = s;
+        }
+        newest = s;
+        if (oldest == null) {
+            oldest = s;
+        }
+    }
+
+    private void unlink(State<T> s) {
+        if (s.newer != null) {
+            s.newer.older = s.older;
+        } else {
+            newest = s.older;
+        }
+        if (s.older != null) {
+            s.older.newer = s.newer;
+        } else {
+            oldest = s.newer;
+        }
+        s.newer = s.older = null;
+    }
+
+    /**
+     * A state of the deterministic automaton : a set of multistates.
+     * <p>
+     * Once evicted from the cache, a state loses its content. It can't be used
+     * any more, and transitions leading to it are computed again.</p>
+     *
+     * @param <T>
+     */
+    static final class State<T> {
+
+        private final int id;
+        private MultiStateIF<T>[] members;
+        private Map<MultiStateIF<T>, Integer> memberIndex;
+        private final boolean terminal;
+        /**
+         * 1 if the state is idle, 2 if it's not, 0 if unknown.
+         */
+        private byte idle;
+        private HashMap<T, Transition<T>> transitions = new HashMap<>();
+        /**
+         * Transitions, per token class, if a classifier is used.
+         */
+        private Transition<T>[] classTransitions;
+        /**
+         * Transitions for classes from {@link #MAX_DENSE_CLASS}.
+         */
+        private HashMap<Integer, Transition<T>> sparseTransitions;
+        /**
+         * Approximate size of the state and of its transitions.
+         */
+        private long bytes;
+        /**
+         * Neighbours in the LRU list of the cache.
+         */
+        private State<T> newer, older;
+
+        @SuppressWarnings("unchecked")
+        private State(int id, LinkedHashMap<MultiStateIF<T>, Integer> memberIndex) {
+            this.id = id;
+            this.memberIndex = memberIndex;
+            this.members = (MultiStateIF<T>[]) new MultiStateIF<?>[memberIndex.size()];
+            boolean hasTerminal = false;
+            for (Map.Entry<MultiStateIF<T>, Integer> e : memberIndex.entrySet()) {
+                members[e.getValue()] = e.getKey();
+                hasTerminal = hasTerminal || e.getKey().isTerminal();
+            }
+            this.terminal = hasTerminal;
+            this.bytes = STATE_BYTES + MEMBER_BYTES * members.length;
+        }
+
+        private void release() {
+            members = null;
+            memberIndex = null;
+            transitions = null;
+            classTransitions = null;
+            sparseTransitions = null;
+        }
+
+        /**
+         * Returns the cached transition for a token or, if tokenClass is
+         * non-negative, for its class.
+         */
+        private Transition<T> getTransition(T token, int tokenClass) {
+            if (tokenClass < 0) {
+                return transitions.get(token);
+            } else if (classTransitions != null && tokenClass < classTransitions.length) {
+                return classTransitions[tokenClass];
+            } else if (sparseTransitions != null && tokenClass >= MAX_DENSE_CLASS) {
+                return sparseTransitions.get(tokenClass);
+            } else {
+                return null;
+            }
+        }
+
+        /**
+         * Caches (or, if transition is null, forgets) the transition for a
+         * token or its class.
+         *
+         * @return the change in the size of the state, in bytes.
+         */
+        @SuppressWarnings("unchecked")
+        private long putTransition(T token, int tokenClass, Transition<T> transition) {
+            long delta = 0;
+            Transition<T> old;
+            if (tokenClass < 0) {
+                old = transition == null ? transitions.remove(token) : transitions.put(token, transition);
+            } else if (tokenClass >= MAX_DENSE_CLASS) {
+                if (sparseTransitions == null) {
+                    sparseTransitions = new HashMap<>();
+                }
+                old = transition == null ? sparseTransitions.remove(tokenClass) : sparseTransitions.put(tokenClass, transition);
+                if (old == null && transition != null) {
+                    delta += MAP_ENTRY_BYTES;
+                } else if (old != null && transition == null) {
+                    delta -= MAP_ENTRY_BYTES;
+                }
+            } else {
+                if (classTransitions == null || tokenClass >= classTransitions.length) {
+                    int oldLength = classTransitions == null ? 0 : classTransitions.length;
+                    int length = Math.min(MAX_DENSE_CLASS, Math.max(tokenClass + 1, 2 * oldLength));
+                    classTransitions = classTransitions == null
+                            ? (Transition<T>[]) new Transition<?>[length]
+                            : Arrays.copyOf(classTransitions, length);
+                    delta += SLOT_BYTES * (length - oldLength);
+                }
+                old = classTransitions[tokenClass];
+                classTransitions[tokenClass] = transition;
+            }
+            if (old != null) {
+                delta -= old.bytes();
+            }
+            if (transition != null) {
+                delta += transition.bytes();
+            }
+            bytes += delta;
+            return delta;
+        }
+
+        boolean isEvicted() {
+            return members == null;
+        }
+
+        int getId() {
+            return id;
+        }
+
+        /**
+         * The number of multistates in this state.
+         *
+         * @return
+         */
+        int size() {
+            return members.length;
+        }
+
+        MultiStateIF<T> getMember(int i) {
+            return members[i];
+        }
+
+        int indexOf(MultiStateIF<T> member) {
+            return memberIndex.get(member);
+        }
+
+        /**
+         * True if at least one of the multistates is terminal.
+         *
+         * @return
+         */
+        boolean isTerminal() {
+            return terminal;
+        }
+
+        @Override
+        public String toString() {
+            return "(DFA " + id + " " + (isEvicted() ? "evicted" : memberIndex.keySet()) + ")";
+        }
+    }
+
+    /**
+     * A transition between two states.
+     * <p>
+     * The transition records its <em>edges</em> : for each edge k,
+     * {@link #getEdgeSource(int)} is the index of a member of the source state,
+     * and {@link #getEdgeTarget(int)} the index of a member of the target state
+     * it leads to.</p>
+     *
+     * @param <T>
+     */
+    static final class Transition<T> {
+
+        private final State<T> target;
+        private final int[] edges;
+
+        private Transition(State<T> target, int[] edges) {
+            this.target = target;
+            this.edges = edges;
+        }
+
+        State<T> getTarget() {
+            return target;
+        }
+
+        private long bytes() {
+            return TRANSITION_BYTES + EDGE_BYTES * getNumberOfEdges();
+        }
+
+        int getNumberOfEdges() {
+            return edges.length / 2;
+        }
+
+        int getEdgeSource(int edge) {
+            return edges[2 * edge];
+        }
+
+        int getEdgeTarget(int edge) {
+            return edges[2 * edge + 1];
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A finite list of words, such as a lexicon.
+ * <p>
+ * The words are stored in a minimal deterministic automaton (a DAFSA) : the
+ * words share their common prefixes, and their common suffixes. Reading a
+ * token is a single lookup, whatever the number of words, and the language
+ * has at most one state at each position (a union of sequences would have a
+ * state per word).</p>
+ * <p>
+ * The automaton is built once and for all ; the language is immutable.</p>
+ *
+ * @author rosmord
+ * @param <T> the token type.
+ */
+class LexiconLanguage<T> implements RegularLanguageIF<T> {
+
+    private final LexiconState root;
+    private final int size;
+    private final int numberOfStates;
+    /**
+     * The hash code of the set of words (0 if not computed yet).
+     */
+    private int hash;
+
+    /**
+     * @param words the words (duplicates are ignored).
+     */
+    LexiconLanguage(Collection<? extends List<T>> words) {
+        TrieNode<T> trie = new TrieNode<>();
+        int count = 0;
+        for (List<T> word : words) {
+            TrieNode<T> node = trie;
+            for (T token : word) {
+                node = node.next.computeIfAbsent(token, t -> new TrieNode<>());
+            }
+            if (!node.terminal) {
+                node.terminal = true;
+                count++;
+            }
+        }
+        this.size = count;
+        HashMap<List<Object>, LexiconState> register = new HashMap<>();
+        this.root = minimize(trie, register);
+        this.numberOfStates = register.size();
+    }
+
+    /**
+     * Builds the states for a trie, sharing the states with the same future.
+     * Their children being already shared, two states are equivalent iff they
+     * have the same terminal status and the same transitions.
+     */
+    private LexiconState minimize(TrieNode<T> node, HashMap<List<Object>, LexiconState> register) {
+        HashMap<T, LexiconState> next = new HashMap<>(node.next.size() * 2);
+        for (Map.Entry<T, TrieNode<T>> e : node.next.entrySet()) {
+            next.put(e.getKey(), minimize(e.getValue(), register));
+        }
+        List<Object> key = Arrays.asList(node.terminal, next);
+        LexiconState result = register.get(key);
+        if (result == null) {
+            result = new LexiconState(node.terminal, next);
+            register.put(key, result);
+        }
+        return result;
+    }
+
+    @Override
+    public Set<? extends MultiStateIF<T>> getInitialStates() {
+        return root.isDead() ? Collections.emptySet() : root.self;
+    }
+
+    /**
+     * The number of words.
+     *
+     * @return
+     */
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * The number of states of the automaton.
+     *
+     * @return
+     */
+    int getNumberOfStates() {
+        return numberOfStates;
+    }
+
+    /**
+     * Lists the words of the lexicon.
+     *
+     * @return
+     */
+    List<List<T>> getWords() {
+        List<List<T>> result = new ArrayList<>(size);
+        collectWords(root, new ArrayList<>(), result);
+        return result;
+    }
+
+    private void collectWords(LexiconState state, ArrayList<T> prefix, List<List<T>> result) {
+        if (state.terminal) {
+            result.add(new ArrayList<>(prefix));
+        }
+        for (Map.Entry<T, LexiconState> e : state.next.entrySet()) {
+            prefix.add(e.getKey());
+            collectWords(e.getValue(), prefix, result);
+            prefix.remove(prefix.size() - 1);
+        }
+    }
+
+    /**
+     * All the tokens which appear in the words.
+     *
+     * @return
+     */
+    Set<T> getTokens() {
+        Set<T> result = new LinkedHashSet<>();
+        collectTokens(root, Collections.newSetFromMap(new IdentityHashMap<>()), result);
+        return result;
+    }
+
+    private void collectTokens(LexiconState state, Set<LexiconState> visited, Set<T> result) {
+        if (visited.add(state)) {
+            result.addAll(state.next.keySet());
+            for (LexiconState n : state.next.values()) {
+                collectTokens(n, visited, result);
+            }
+        }
+    }
+
+    /**
+     * The longest prefix common to all words.
+     *
+     * @return
+     */
+    List<T> getCommonPrefix() {
+        List<T> result = new ArrayList<>();
+        LexiconState state = root;
+        while (!state.terminal && state.next.size() == 1) {
+            Map.Entry<T, LexiconState> e = state.next.entrySet().iterator().next();
+            result.add(e.getKey());
+            state = e.getValue();
+        }
+        return result;
+    }
+
+    /**
+     * The tokens which appear in all words.
+     *
+     * @return
+     */
+    Set<T> getRequiredTokens() {
+        return requiredTokens(root, new IdentityHashMap<>());
+    }
+
+    private Set<T> requiredTokens(LexiconState state, IdentityHashMap<LexiconState, Set<T>> memo) {
+        Set<T> result = memo.get(state);
+        if (result == null) {
+            result = new LinkedHashSet<>();
+            if (!state.terminal) {
+                boolean first = true;
+                for (Map.Entry<T, LexiconState> e : state.next.entrySet()) {
+                    Set<T> s = new LinkedHashSet<>(requiredTokens(e.getValue(), memo));
+                    s.add(e.getKey());
+                    if (first) {
+                        result.addAll(s);
+                        first = false;
+                    } else {
+                        result.retainAll(s);
+                    }
+                }
+            }
+            memo.put(state, result);
+        }
+        return result;
+    }
+
+    /**
+     * A node of the trie, used while building the automaton.
+     */
+    private static final class TrieNode<T> {
+
+        private final HashMap<T, TrieNode<T>> next = new HashMap<>(4);
+        private boolean terminal;
+    }
+
+    /**
+     * A state of the automaton. States are unique : equality is identity.
+     */
+    private class LexiconState extends AbstractMultiState<T> {
+
+        private final HashMap<T, LexiconState> next;
+        private final Set<LexiconState> self = Collections.singleton(this);
+
+        LexiconState(boolean terminal, HashMap<T, LexiconState> next) {
+            super(terminal);
+            this.next = next;
+        }
+
+        @Override
+        public Set<LexiconState> accept(T token) {
+            LexiconState n = next.get(token);
+            return n == null ? Collections.emptySet() : n.self;
+        }
+
+        @Override
+        public boolean isDead() {
+            // Only the root of an empty lexicon has no future.
+            return !terminal && next.isEmpty();
+        }
+
+        @Override
+        public RegularLanguageIF<T> getParent() {
+            return LexiconLanguage.this;
+        }
+
+        @Override
+        public String toString() {
+            return "(LEXICON " + (terminal ? "final " : "") + next.keySet() + ")";
+        }
+    }
+
+    /**
+     * Two lexicons are equal if they contain the same words.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        } else if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        LexiconLanguage<?> other = (LexiconLanguage<?>) obj;
+        return size == other.size && numberOfStates == other.numberOfStates
+                && hashCode() == other.hashCode()
+                && new HashSet<>(getWords()).equals(new HashSet<>(other.getWords()));
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            for (List<T> word : getWords()) {
+                h += word.hashCode();
+            }
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return "[LEXICON " + size + " words]";
+    }
+}
@@ -0,0 +1,352 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Search for extractors whose parts are finite sets of literal sequences
+ * (built with exact(), exactSequence(), stringRecognizer(), and unions of
+ * them).
+ * <p>
+ * All the words of the extractor (one word per choice of a sequence in each
+ * part) are put in an Aho-Corasick automaton, which reads each token once. For
+ * a single word, this is the Knuth-Morris-Pratt algorithm.</p>
+ * <p>
+ * The matches are those of the general algorithm : the first match to end
+ * wins, and among the matches which end at the same position, the one whose
+ * markers are the smallest (hence, the longest one).</p>
+ * <p>
+ * When the words are made of chars or ints, the transitions of each node are
+ * also kept in sorted arrays of codes, and inputs of chars or ints are read
+ * with {@link TokenInput#code(int)}, without boxing their tokens.</p>
+ * <p>
+ * This class is immutable, and can be shared.</p>
+ *
+ * @author rosmord
+ * @param <T> the token type.
+ */
+final class LiteralSearch<T> {
+
+    /**
+     * Maximal number of words ; larger extractors use the general algorithm.
+     */
+    private static final int MAX_WORDS = 10000;
+
+    private final Node<T> root = new Node<>();
+    /**
+     * Are all tokens chars or ints ?
+     */
+    private boolean hasCodes = true;
+
+    private LiteralSearch() {
+    }
+
+    /**
+     * Builds a literal search for a sequence of parts.
+     *
+     * @param <T>
+     * @param parts
+     * @return the search, or null if the parts are not all literal, or if they
+     * accept the empty sequence.
+     */
+    static <T> LiteralSearch<T> of(List<RegularLanguageIF<T>> parts) {
+        // The words, with the end of each part.
+        List<List<T>> words = Collections.singletonList(Collections.emptyList());
+        List<int[]> ends = Collections.singletonList(new int[0]);
+        WordsFinder<T> finder = new WordsFinder<>();
+        for (RegularLanguageIF<T> part : parts) {
+            List<List<T>> partWords = finder.visit(part);
+            if (partWords == null || (long) words.size() * partWords.size() > MAX_WORDS) {
+                return null;
+            }
+            List<List<T>> nextWords = new ArrayList<>();
+            List<int[]> nextEnds = new ArrayList<>();
+            for (int i = 0; i < words.size(); i++) {
+                for (List<T> w : partWords) {
+                    List<T> word = new ArrayList<>(words.get(i));
+                    word.addAll(w);
+                    int[] e = Arrays.copyOf(ends.get(i), ends.get(i).length + 1);
+                    e[e.length - 1] = word.size();
+                    nextWords.add(word);
+                    nextEnds.add(e);
+                }
+            }
+            words = nextWords;
+            ends = nextEnds;
+        }
+        if (words.isEmpty()) {
+            return null;
+        }
+        LiteralSearch<T> result = new LiteralSearch<>();
+        for (int i = 0; i < words.size(); i++) {
+            if (words.get(i).isEmpty()) {
+                return null;
+            }
+            result.add(words.get(i), ends.get(i));
+        }
+        result.link();
+        return result;
+    }
+
+    private void add(List<T> word, int[] ends) {
+        Node<T> node = root;
+        for (T token : word) {
+            hasCodes = hasCodes && TokenInput.hasCode(token);
+            Node<T> child = node.next.get(token);
+            if (child == null) {
+                child = new Node<>();
+                node.next.put(token, child);
+            }
+            node = child;
+        }
+        if (node.ends == null || isSmaller(ends, node.ends)) {
+            node.ends = ends;
+        }
+    }
+
+    /**
+     * Computes the failure links, breadth-first. The words ending at a node
+     * are those of the node, and those ending at its failure node, which are
+     * shorter : the best word is the node's own, if any.
+     */
+    private void link() {
+        ArrayDeque<Node<T>> queue = new ArrayDeque<>();
+        for (Node<T> child : root.next.values()) {
+            child.fail = root;
+            queue.add(child);
+        }
+        if (hasCodes) {
+            root.indexCodes();
+        }
+        while (!queue.isEmpty()) {
+            Node<T> node = queue.poll();
+            if (hasCodes) {
+                node.indexCodes();
+            }
+            if (node.ends == null) {
+                node.ends = node.fail.ends;
+            }
+            for (Map.Entry<T, Node<T>> e : node.next.entrySet()) {
+                Node<T> child = e.getValue();
+                Node<T> f = node.fail;
+                while (f != root && !f.next.containsKey(e.getKey())) {
+                    f = f.fail;
+                }
+                Node<T> target = f.next.get(e.getKey());
+                child.fail = target == null ? root : target;
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Finds the first match which starts at or after a given position.
+     *
+     * @param input the input.
+     * @param from the position where the search starts.
+     * @return the markers of the match (its start, then the end of each part),
+     * or null if there is none.
+     */
+    int[] find(TokenInput<T> input, int from) {
+        if (hasCodes && input.hasCodes()) {
+            return findCodes(input, from);
+        }
+        Node<T> node = root;
+        for (int pos = from; pos < input.size(); pos++) {
+            T token = input.get(pos);
+            Node<T> child;
+            while ((child = node.next.get(token)) == null && node != root) {
+                node = node.fail;
+            }
+            node = child == null ? root : child;
+            if (node.ends != null) {
+                return markers(node, pos);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Same as {@link #find(TokenInput, int)}, reading the codes of the input.
+     */
+    private int[] findCodes(TokenInput<T> input, int from) {
+        Node<T> node = root;
+        for (int pos = from; pos < input.size(); pos++) {
+            int code = input.code(pos);
+            Node<T> child;
+            while ((child = node.next(code)) == null && node != root) {
+                node = node.fail;
+            }
+            node = child == null ? root : child;
+            if (node.ends != null) {
+                return markers(node, pos);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The markers of the best word ending at a node, at a given position.
+     */
+    private static int[] markers(Node<?> node, int pos) {
+        int[] ends = node.ends;
+        int start = pos + 1 - ends[ends.length - 1];
+        int[] markers = new int[ends.length + 1];
+        markers[0] = start;
+        for (int i = 0; i < ends.length; i++) {
+            markers[i + 1] = start + ends[i];
+        }
+        return markers;
+    }
+
+    private static boolean isSmaller(int[] a, int[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) {
+                return a[i] < b[i];
+            }
+        }
+        return false;
+    }
+
+    private static final class Node<T> {
+
+        private final HashMap<T, Node<T>> next = new HashMap<>(4);
+        private Node<T> fail;
+        /**
+         * The ends of the parts, relative to the start, for the best word
+         * ending here, or null.
+         */
+        private int[] ends;
+        /**
+         * The transitions, as sorted codes and their targets, if all tokens
+         * have codes.
+         */
+        private int[] codes;
+        private Node<T>[] children;
+
+        @SuppressWarnings("unchecked")
+        private void indexCodes() {
+            codes = new int[next.size()];
+            int i = 0;
+            for (T token : next.keySet()) {
+                codes[i++] = TokenInput.codeOf(token);
+            }
+            Arrays.sort(codes);
+            children = (Node<T>[]) new Node<?>[codes.length];
+            for (Map.Entry<T, Node<T>> e : next.entrySet()) {
+                children[Arrays.binarySearch(codes, TokenInput.codeOf(e.getKey()))] = e.getValue();
+            }
+        }
+
+        /**
+         * The transition for a code, or null.
+         */
+        private Node<T> next(int code) {
+            int i = Arrays.binarySearch(codes, code);
+            return i < 0 ? null : children[i];
+        }
+    }
+
+    /**
+     * Lists the words of a literal language, or returns null if the language
+     * is not literal.
+     */
+    private static final class WordsFinder<T> implements LanguageVisitor<T, List<List<T>>> {
+
+        @Override
+        public List<List<T>> visitLabel(LabelLanguage<T> l) {
+            if (l.getLabel().getClass() == SimpleLabel.class) {
+                return Collections.singletonList(Collections.singletonList(((SimpleLabel<T>) l.getLabel()).getToken()));
+            } else if (l.getLabel().getClass() == DispatchLabel.class
+                    && ((DispatchLabel<T>) l.getLabel()).getSets().isEmpty()
+                    && ((DispatchLabel<T>) l.getLabel()).getFallback().isEmpty()) {
+                List<List<T>> result = new ArrayList<>();
+                for (T token : ((DispatchLabel<T>) l.getLabel()).getTokens()) {
+                    result.add(Collections.singletonList(token));
+                }
+                return result;
+            } else {
+                return null;
+            }
+        }
+
+        @Override
+        public List<List<T>> visitSequence(SequenceLanguage<T> l) {
+            List<List<T>> result = Collections.singletonList(Collections.emptyList());
+            for (RegularLanguageIF<T> child : l.getChildren()) {
+                List<List<T>> c = visit(child);
+                if (c == null || (long) result.size() * c.size() > MAX_WORDS) {
+                    return null;
+                }
+                List<List<T>> next = new ArrayList<>();
+                for (List<T> prefix : result) {
+                    for (List<T> suffix : c) {
+                        List<T> word = new ArrayList<>(prefix);
+                        word.addAll(suffix);
+                        next.add(word);
+                    }
+                }
+                result = next;
+            }
+            return result;
+        }
+
+        @Override
+        public List<List<T>> visitUnion(UnionLanguage<T> l) {
+            List<List<T>> result = new ArrayList<>();
+            for (RegularLanguageIF<T> child : l.getChildren()) {
+                List<List<T>> c = visit(child);
+                if (c == null || result.size() + c.size() > MAX_WORDS) {
+                    return null;
+                }
+                result.addAll(c);
+            }
+            return result;
+        }
+
+        @Override
+        public List<List<T>> visitIntersection(IntersectionLanguage<T> l) {
+            return null;
+        }
+
+        @Override
+        public List<List<T>> visitStar(KleeneStarLanguage<T> l) {
+            return null;
+        }
+
+        @Override
+        public List<List<T>> visitComplement(ComplementLanguage<T> l) {
+            return null;
+        }
+
+        @Override
+        public List<List<T>> visitRepeat(RepeatLanguage<T> l) {
+            return null;
+        }
+
+        @Override
+        public List<List<T>> visitLexicon(LexiconLanguage<T> l) {
+            return l.getSize() > MAX_WORDS ? null : l.getWords();
+        }
+
+        @Override
+        public List<List<T>> visitEmptyLanguage(EmptyLanguage<T> l) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<List<T>> visitEmptySequence(EmptyStringLanguage<T> l) {
+            return Collections.singletonList(Collections.emptyList());
+        }
+
+        @Override
+        public List<List<T>> visitOther(RegularLanguageIF<T> l) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A token classifier computed from the labels of a language.
+ * <p>
+ * The labels built by {@link RegularLanguageFactory} have a known structure :
+ * single tokens, sets of tokens, ranges, and their complements. They split the
+ * tokens into <em>minterms</em>, that is, classes of tokens which are accepted
+ * by exactly the same labels :</p>
+ * <ul>
+ * <li>each token which appears as a literal in a label (exact(), inSet() on a
+ * hash set, and their complements) is a class by itself ;</li>
+ * <li>the other tokens are classified by their position relative to the
+ * bounds of all ranges and runs of bit sets (found by binary search) ;</li>
+ * <li>labels whose structure is unknown (user-supplied labels, and sets which
+ * don't compare their elements with equals(), like a TreeSet built with a
+ * comparator) are evaluated on the token, and each one adds one bit to the
+ * class.</li>
+ * </ul>
+ * <p>
+ * The class numbers are dense : when there are opaque labels, each combination
+ * of a literal or region with the results of the opaque labels gets the next
+ * free number when it's first seen, instead of a number made of its bits,
+ * which would leave most numbers unused.</p>
+ * <p>
+ * The labels should not change after the classifier is built (which would be
+ * the case if the set passed to inSet() was modified).</p>
+ *
+ * @author rosmord
+ * @param <T> the token type.
+ */
+final class MintermClassifier<T> implements TokenClassifier<T> {
+
+    /**
+     * Maximal number of opaque labels ; with more labels, the number of
+     * classes would be too large.
+     */
+    static final int MAX_OPAQUE_LABELS = 8;
+
+    private final HashMap<T, Integer> literals;
+    private final Comparable<Object>[] bounds;
+    private final List<LazyLabelIF<T>> opaqueLabels;
+    /**
+     * The class numbers of the combinations seen so far, when there are opaque
+     * labels. The classifier is shared by the threads of an extractor.
+     */
+    private final ConcurrentHashMap<Long, Integer> combinations = new ConcurrentHashMap<>();
+    private final AtomicInteger nextClass = new AtomicInteger();
+
+    private MintermClassifier(HashMap<T, Integer> literals, Comparable<Object>[] bounds, List<LazyLabelIF<T>> opaqueLabels) {
+        this.literals = literals;
+        this.bounds = bounds;
+        this.opaqueLabels = opaqueLabels;
+    }
+
+    /**
+     * Computes the minterms of a number of languages.
+     *
+     * @param <T>
+     * @param languages
+     * @return a classifier, or null if the languages can't be analyzed.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> MintermClassifier<T> of(Collection<? extends RegularLanguageIF<T>> languages) {
+        List<LazyLabelIF<T>> labels = collectLabels(languages);
+        if (labels == null) {
+            return null;
+        }
+        HashMap<T, Integer> literals = new HashMap<>();
+        TreeSet<Object> bounds = new TreeSet<>();
+        List<LazyLabelIF<T>> opaqueLabels = new ArrayList<>();
+        for (LazyLabelIF<T> label : labels) {
+            analyze(label, literals, bounds, opaqueLabels);
+        }
+        if (opaqueLabels.size() > MAX_OPAQUE_LABELS) {
+            return null;
+        }
+        return new MintermClassifier<>(literals,
+                bounds.toArray((Comparable<Object>[]) new Comparable<?>[bounds.size()]),
+                opaqueLabels);
+    }
+
+    /**
+     * Collects all labels of a number of languages.
+     *
+     * @param <T>
+     * @param languages
+     * @return the labels, or null if some part of a language is unknown.
+     */
+    static <T> List<LazyLabelIF<T>> collectLabels(Collection<? extends RegularLanguageIF<T>> languages) {
+        LabelCollector<T> collector = new LabelCollector<>();
+        for (RegularLanguageIF<T> l : languages) {
+            if (!collector.visit(l)) {
+                return null;
+            }
+        }
+        return collector.labels;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void analyze(LazyLabelIF<T> label, HashMap<T, Integer> literals, TreeSet<Object> bounds, List<LazyLabelIF<T>> opaqueLabels) {
+        // Public label classes may be subclassed : test the exact class.
+        Class<?> c = label.getClass();
+        if (c == AnyTokenLabel.class) {
+            // Doesn't split the tokens.
+        } else if (c == SimpleLabel.class) {
+            literals.putIfAbsent(((SimpleLabel<T>) label).getToken(), literals.size());
+        } else if (c == SetLabel.class && ((SetLabel<T>) label).isHashSet()) {
+            addLiterals(((SetLabel<T>) label).getPossibleTokens(), literals);
+        } else if (c == ComplementSetLabel.class && ((ComplementSetLabel<T>) label).isHashSet()) {
+            addLiterals(((ComplementSetLabel<T>) label).getImpossibleTokens(), literals);
+        } else if (c == DispatchLabel.class) {
+            DispatchLabel<T> d = (DispatchLabel<T>) label;
+            addLiterals(d.getTokens(), literals);
+            for (LazyLabelIF<T> l : d.getSets()) {
+                analyze(l, literals, bounds, opaqueLabels);
+            }
+            for (LazyLabelIF<T> l : d.getFallback()) {
+                analyze(l, literals, bounds, opaqueLabels);
+            }
+        } else if (c == ComplementLabel.class) {
+            analyze(((ComplementLabel<T>) label).getComplementedLabel(), literals, bounds, opaqueLabels);
+        } else if (c == RangeLabel.class) {
+            RangeLabel<?> r = (RangeLabel<?>) label;
+            bounds.add(r.getLow());
+            bounds.add(r.getHigh());
+        } else if (c == OutOfRangeLabel.class) {
+            OutOfRangeLabel<?> r = (OutOfRangeLabel<?>) label;
+            bounds.add(r.getLow());
+            bounds.add(r.getHigh());
+        } else if (c == BitSetLabel.class) {
+            // Each run of codes is a range.
+            BitSetLabel<T> b = (BitSetLabel<T>) label;
+            BitSet codes = b.getCodes();
+            for (int i = codes.nextSetBit(0); i >= 0; i = codes.nextSetBit(i)) {
+                int end = codes.nextClearBit(i);
+                bounds.add(b.token(i));
+                bounds.add(b.token(end - 1));
+                i = end;
+            }
+        } else if (!opaqueLabels.contains(label)) {
+            opaqueLabels.add(label);
+        }
+    }
+
+    private static <T> void addLiterals(Set<T> tokens, HashMap<T, Integer> literals) {
+        for (T t : tokens) {
+            literals.putIfAbsent(t, literals.size());
+        }
+    }
+
+    @Override
+    public int classify(T token) {
+        Integer literal = literals.get(token);
+        int base = literal != null ? literal : literals.size() + region(token);
+        if (opaqueLabels.isEmpty()) {
+            return base;
+        }
+        int bits = 0;
+        for (int i = 0; i < opaqueLabels.size(); i++) {
+            if (opaqueLabels.get(i).matches(token)) {
+                bits |= 1 << i;
+            }
+        }
+        return combinations.computeIfAbsent(((long) base << MAX_OPAQUE_LABELS) | bits,
+                k -> nextClass.getAndIncrement());
+    }
+
+    /**
+     * The position of a token relative to the range bounds : 2i+1 if it's
+     * equal to bound i, 2i if it's between bounds i-1 and i.
+     */
+    private int region(T token) {
+        int low = 0, high = bounds.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = bounds[mid].compareTo(token);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return 2 * mid + 1;
+            }
+        }
+        return 2 * low;
+    }
+
+    /**
+     * A bound on the number of classes ; all class numbers are smaller.
+     *
+     * @return
+     */
+    int getNumberOfClasses() {
+        return (literals.size() + 2 * bounds.length + 1) << opaqueLabels.size();
+    }
+
+    /**
+     * Collects all labels in a language. Returns false if some part of the
+     * language is unknown.
+     */
+    private static class LabelCollector<T> implements LanguageVisitor<T, Boolean> {
+
+        private final List<LazyLabelIF<T>> labels = new ArrayList<>();
+
+        private boolean visitAll(List<RegularLanguageIF<T>> children) {
+            for (RegularLanguageIF<T> child : children) {
+                if (!visit(child)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Boolean visitLabel(LabelLanguage<T> l) {
+            labels.add(l.getLabel());
+            return true;
+        }
+
+        @Override
+        public Boolean visitSequence(SequenceLanguage<T> l) {
+            return visitAll(l.getChildren());
+        }
+
+        @Override
+        public Boolean visitUnion(UnionLanguage<T> l) {
+            return visitAll(l.getChildren());
+        }
+
+        @Override
+        public Boolean visitIntersection(IntersectionLanguage<T> l) {
+            return visitAll(l.getChildren());
+        }
+
+        @Override
+        public Boolean visitStar(KleeneStarLanguage<T> l) {
+            return visit(l.getRepeatedLanguage());
+        }
+
+        @Override
+        public Boolean visitComplement(ComplementLanguage<T> l) {
+            return visit(l.getComplemented());
+        }
+
+        @Override
+        public Boolean visitRepeat(RepeatLanguage<T> l) {
+            return visit(l.getRepeatedLanguage());
+        }
+
+        @Override
+        public Boolean visitLexicon(LexiconLanguage<T> l) {
+            for (T token : l.getTokens()) {
+                labels.add(new SimpleLabel<>(token));
+            }
+            return true;
+        }
+
+        @Override
+        public Boolean visitEmptyLanguage(EmptyLanguage<T> l) {
+            return true;
+        }
+
+        @Override
+        public Boolean visitEmptySequence(EmptyStringLanguage<T> l) {
+            return true;
+        }
+
+        @Override
+        public Boolean visitOther(RegularLanguageIF<T> l) {
+            return false;
+        }
+    }
+}
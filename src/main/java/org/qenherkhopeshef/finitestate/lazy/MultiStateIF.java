@@ -41,4 +41,30 @@ interface MultiStateIF<T> {
      * @return the language which has created this state.
      */
     RegularLanguageIF<T> getParent();
+
+    /**
+     * Is this state dead, that is, can we be sure that no list of tokens
+     * (including the empty one) will lead from it to a terminal state ?
+     * <p>
+     * Dead states are dropped from the sets of states. The analysis is
+     * conservative : returning false is always correct.</p>
+     *
+     * @return true if the state is known to be dead.
+     */
+    default boolean isDead() {
+        return false;
+    }
+
+    /**
+     * Is this state universal, that is, can we be sure that all lists of
+     * tokens (including the empty one) lead from it to a terminal state ?
+     * <p>
+     * This is used to detect dead states in complements. The analysis is
+     * conservative : returning false is always correct.</p>
+     *
+     * @return true if the state is known to be universal.
+     */
+    default boolean isUniversal() {
+        return false;
+    }
 }
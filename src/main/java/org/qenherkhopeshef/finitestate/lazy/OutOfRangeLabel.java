@@ -7,8 +7,32 @@ class OutOfRangeLabel<T extends Comparable<T>> implements LazyLabelIF<T>{
 		this.high = high;
 	}
 
+	T getLow() {
+		return low;
+	}
+
+	T getHigh() {
+		return high;
+	}
+
 	@Override
 	public boolean matches(T token) {
 		return low.compareTo(token) > 0 || token.compareTo(high) > 0;
 	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		} else if (obj == null || obj.getClass() != getClass()) {
+			return false;
+		}
+		OutOfRangeLabel<?> other = (OutOfRangeLabel<?>) obj;
+		return low.equals(other.low) && high.equals(other.high);
+	}
+
+	@Override
+	public int hashCode() {
+		return ~(low.hashCode() + 31 * high.hashCode());
+	}
 }
@@ -0,0 +1,447 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Literal tokens which every word of a language contains, used to skip the
+ * parts of the input where no match can start.
+ * <p>
+ * Two facts are extracted from the structure of the language :</p>
+ * <ul>
+ * <li>a <em>prefix</em> : the tokens (given by exact()) which all words start
+ * with. A match can only start on an occurrence of the prefix, which is
+ * found with the Boyer-Moore-Horspool algorithm ;</li>
+ * <li>a <em>required</em> token, which all words contain. When it doesn't
+ * appear in the rest of the input, there are no more matches.</li>
+ * </ul>
+ * <p>
+ * The search uses the prefilter when its automaton is idle, that is, when no
+ * match is in progress.</p>
+ * <p>
+ * On inputs of chars or ints, the tokens are compared as primitive codes (see
+ * {@link TokenInput#code(int)}), without boxing them.</p>
+ *
+ * @author rosmord
+ * @param <T> the token type.
+ */
+final class Prefilter<T> {
+
+    private static final int CODE_SHIFT_MASK = 0xFF;
+
+    private final List<T> prefix;
+    /**
+     * Horspool's shifts, for the tokens of the prefix.
+     */
+    private final HashMap<T, Integer> shifts = new HashMap<>();
+    private final T required;
+    /**
+     * The prefix and the required token as codes, or null if some of them
+     * are neither chars nor ints.
+     */
+    private final int[] prefixCodes;
+    private final int requiredCode;
+    /**
+     * Horspool's shifts for codes, indexed by the low bits of the codes : each
+     * entry is the smallest shift of the codes which share these bits.
+     */
+    private final int[] codeShifts;
+
+    private Prefilter(List<T> prefix, T required) {
+        this.prefix = prefix;
+        this.required = required;
+        int m = prefix.size();
+        for (int i = 0; i < m - 1; i++) {
+            shifts.put(prefix.get(i), m - 1 - i);
+        }
+        boolean hasCodes = required == null || TokenInput.hasCode(required);
+        for (T token : prefix) {
+            hasCodes = hasCodes && TokenInput.hasCode(token);
+        }
+        if (hasCodes) {
+            this.prefixCodes = new int[m];
+            for (int i = 0; i < m; i++) {
+                prefixCodes[i] = TokenInput.codeOf(prefix.get(i));
+            }
+            this.requiredCode = required == null ? 0 : TokenInput.codeOf(required);
+            this.codeShifts = new int[CODE_SHIFT_MASK + 1];
+            Arrays.fill(codeShifts, m);
+            for (int i = 0; i < m - 1; i++) {
+                int k = prefixCodes[i] & CODE_SHIFT_MASK;
+                codeShifts[k] = Math.min(codeShifts[k], m - 1 - i);
+            }
+        } else {
+            this.prefixCodes = null;
+            this.requiredCode = 0;
+            this.codeShifts = null;
+        }
+    }
+
+    /**
+     * Analyzes a language.
+     *
+     * @param <T>
+     * @param language
+     * @return a prefilter, or null if no literal was found.
+     */
+    static <T> Prefilter<T> of(RegularLanguageIF<T> language) {
+        List<T> prefix = new PrefixFinder<T>().visit(language).tokens;
+        Set<T> required = new RequiredTokensFinder<T>().visit(language);
+        required.removeAll(prefix);
+        T requiredToken = required.isEmpty() ? null : required.iterator().next();
+        if (prefix.isEmpty() && requiredToken == null) {
+            return null;
+        }
+        return new Prefilter<>(prefix, requiredToken);
+    }
+
+    List<T> getPrefix() {
+        return prefix;
+    }
+
+    T getRequired() {
+        return required;
+    }
+
+    /**
+     * Creates a scanner for an input.
+     *
+     * @param input
+     * @return
+     */
+    Scanner scanner(TokenInput<T> input) {
+        return new Scanner(input);
+    }
+
+    /**
+     * Finds the candidate positions in an input. Its positions are cached, so
+     * the successive calls should use increasing positions.
+     */
+    final class Scanner {
+
+        private final TokenInput<T> input;
+        /**
+         * Are the tokens compared as codes ?
+         */
+        private final boolean codes;
+        /**
+         * The next occurrence of the required token, as far as we know.
+         */
+        private int requiredPos = -1;
+        private int prefixPos = -1;
+
+        private Scanner(TokenInput<T> input) {
+            this.input = input;
+            this.codes = prefixCodes != null && input.hasCodes();
+        }
+
+        /**
+         * The first position, from a given one, where a match might start.
+         *
+         * @param from
+         * @return the position, or -1 if there can be no match after from.
+         */
+        int next(int from) {
+            if (required != null && requiredPos < from) {
+                requiredPos = codes ? indexOfCode(requiredCode, from) : indexOf(required, from);
+                if (requiredPos < 0) {
+                    requiredPos = Integer.MAX_VALUE;
+                }
+            }
+            if (requiredPos == Integer.MAX_VALUE) {
+                return -1;
+            }
+            if (prefix.isEmpty()) {
+                return from;
+            }
+            if (prefixPos < from) {
+                prefixPos = codes ? findPrefixCodes(from) : findPrefix(from);
+                if (prefixPos < 0) {
+                    prefixPos = Integer.MAX_VALUE;
+                }
+            }
+            return prefixPos == Integer.MAX_VALUE ? -1 : prefixPos;
+        }
+
+        private int indexOf(T token, int from) {
+            for (int i = from; i < input.size(); i++) {
+                if (Objects.equals(token, input.get(i))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Boyer-Moore-Horspool.
+         */
+        private int findPrefix(int from) {
+            int m = prefix.size();
+            if (m == 1) {
+                return indexOf(prefix.get(0), from);
+            }
+            int n = input.size();
+            int i = from;
+            while (i + m <= n) {
+                T last = input.get(i + m - 1);
+                int j = m - 1;
+                if (Objects.equals(last, prefix.get(j))) {
+                    j--;
+                    while (j >= 0 && Objects.equals(input.get(i + j), prefix.get(j))) {
+                        j--;
+                    }
+                    if (j < 0) {
+                        return i;
+                    }
+                }
+                Integer shift = shifts.get(last);
+                i += shift == null ? m : shift;
+            }
+            return -1;
+        }
+
+        private int indexOfCode(int code, int from) {
+            for (int i = from; i < input.size(); i++) {
+                if (input.code(i) == code) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Boyer-Moore-Horspool, on codes.
+         */
+        private int findPrefixCodes(int from) {
+            int m = prefixCodes.length;
+            if (m == 1) {
+                return indexOfCode(prefixCodes[0], from);
+            }
+            int n = input.size();
+            int i = from;
+            while (i + m <= n) {
+                int last = input.code(i + m - 1);
+                int j = m - 1;
+                if (last == prefixCodes[j]) {
+                    j--;
+                    while (j >= 0 && input.code(i + j) == prefixCodes[j]) {
+                        j--;
+                    }
+                    if (j < 0) {
+                        return i;
+                    }
+                }
+                i += codeShifts[last & CODE_SHIFT_MASK];
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * A literal prefix, and whether the language contains only this word.
+     */
+    private static final class Literal<T> {
+
+        private final List<T> tokens;
+        private final boolean exact;
+
+        Literal(List<T> tokens, boolean exact) {
+            this.tokens = tokens;
+            this.exact = exact;
+        }
+    }
+
+    /**
+     * Computes the literal prefix of a language. The analysis is
+     * conservative : an empty prefix is always correct.
+     */
+    private static final class PrefixFinder<T> implements LanguageVisitor<T, Literal<T>> {
+
+        private final Literal<T> none = new Literal<>(Collections.emptyList(), false);
+
+        @Override
+        public Literal<T> visitLabel(LabelLanguage<T> l) {
+            if (l.getLabel().getClass() == SimpleLabel.class) {
+                return new Literal<>(Collections.singletonList(((SimpleLabel<T>) l.getLabel()).getToken()), true);
+            } else {
+                return none;
+            }
+        }
+
+        @Override
+        public Literal<T> visitSequence(SequenceLanguage<T> l) {
+            List<T> tokens = new ArrayList<>();
+            for (RegularLanguageIF<T> child : l.getChildren()) {
+                Literal<T> c = visit(child);
+                tokens.addAll(c.tokens);
+                if (!c.exact) {
+                    return new Literal<>(tokens, false);
+                }
+            }
+            return new Literal<>(tokens, true);
+        }
+
+        @Override
+        public Literal<T> visitUnion(UnionLanguage<T> l) {
+            List<T> common = null;
+            boolean exact = true;
+            for (RegularLanguageIF<T> child : l.getChildren()) {
+                Literal<T> c = visit(child);
+                if (common == null) {
+                    common = new ArrayList<>(c.tokens);
+                } else {
+                    exact &= common.equals(c.tokens);
+                    int i = 0;
+                    while (i < common.size() && i < c.tokens.size() && Objects.equals(common.get(i), c.tokens.get(i))) {
+                        i++;
+                    }
+                    common.subList(i, common.size()).clear();
+                }
+                exact &= c.exact;
+            }
+            return common == null ? none : new Literal<>(common, exact);
+        }
+
+        @Override
+        public Literal<T> visitIntersection(IntersectionLanguage<T> l) {
+            // All words start with the prefixes of all children.
+            Literal<T> best = none;
+            for (RegularLanguageIF<T> child : l.getChildren()) {
+                Literal<T> c = visit(child);
+                if (c.exact) {
+                    return c;
+                } else if (c.tokens.size() > best.tokens.size()) {
+                    best = new Literal<>(c.tokens, false);
+                }
+            }
+            return best;
+        }
+
+        @Override
+        public Literal<T> visitStar(KleeneStarLanguage<T> l) {
+            return none;
+        }
+
+        @Override
+        public Literal<T> visitComplement(ComplementLanguage<T> l) {
+            return none;
+        }
+
+        @Override
+        public Literal<T> visitRepeat(RepeatLanguage<T> l) {
+            if (l.getMin() == 0) {
+                return none;
+            }
+            Literal<T> c = visit(l.getRepeatedLanguage());
+            return new Literal<>(c.tokens, c.exact && l.getMax() == 1);
+        }
+
+        @Override
+        public Literal<T> visitLexicon(LexiconLanguage<T> l) {
+            return new Literal<>(l.getCommonPrefix(), l.getSize() == 1);
+        }
+
+        @Override
+        public Literal<T> visitEmptyLanguage(EmptyLanguage<T> l) {
+            return none;
+        }
+
+        @Override
+        public Literal<T> visitEmptySequence(EmptyStringLanguage<T> l) {
+            return new Literal<>(Collections.emptyList(), true);
+        }
+
+        @Override
+        public Literal<T> visitOther(RegularLanguageIF<T> l) {
+            return none;
+        }
+    }
+
+    /**
+     * Computes the tokens which all words of a language contain. The analysis
+     * is conservative : an empty set is always correct.
+     */
+    private static final class RequiredTokensFinder<T> implements LanguageVisitor<T, Set<T>> {
+
+        private Set<T> unionOf(List<RegularLanguageIF<T>> children) {
+            Set<T> result = new LinkedHashSet<>();
+            for (RegularLanguageIF<T> child : children) {
+                result.addAll(visit(child));
+            }
+            return result;
+        }
+
+        @Override
+        public Set<T> visitLabel(LabelLanguage<T> l) {
+            Set<T> result = new LinkedHashSet<>();
+            if (l.getLabel().getClass() == SimpleLabel.class) {
+                result.add(((SimpleLabel<T>) l.getLabel()).getToken());
+            }
+            return result;
+        }
+
+        @Override
+        public Set<T> visitSequence(SequenceLanguage<T> l) {
+            return unionOf(l.getChildren());
+        }
+
+        @Override
+        public Set<T> visitUnion(UnionLanguage<T> l) {
+            Set<T> result = null;
+            for (RegularLanguageIF<T> child : l.getChildren()) {
+                if (result == null) {
+                    result = visit(child);
+                } else {
+                    result.retainAll(visit(child));
+                }
+            }
+            return result == null ? new LinkedHashSet<>() : result;
+        }
+
+        @Override
+        public Set<T> visitIntersection(IntersectionLanguage<T> l) {
+            return unionOf(l.getChildren());
+        }
+
+        @Override
+        public Set<T> visitStar(KleeneStarLanguage<T> l) {
+            return new LinkedHashSet<>();
+        }
+
+        @Override
+        public Set<T> visitComplement(ComplementLanguage<T> l) {
+            return new LinkedHashSet<>();
+        }
+
+        @Override
+        public Set<T> visitRepeat(RepeatLanguage<T> l) {
+            return l.getMin() == 0 ? new LinkedHashSet<>() : visit(l.getRepeatedLanguage());
+        }
+
+        @Override
+        public Set<T> visitLexicon(LexiconLanguage<T> l) {
+            return l.getRequiredTokens();
+        }
+
+        @Override
+        public Set<T> visitEmptyLanguage(EmptyLanguage<T> l) {
+            return new LinkedHashSet<>();
+        }
+
+        @Override
+        public Set<T> visitEmptySequence(EmptyStringLanguage<T> l) {
+            return new LinkedHashSet<>();
+        }
+
+        @Override
+        public Set<T> visitOther(RegularLanguageIF<T> l) {
+            return new LinkedHashSet<>();
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * A token classifier for tokens coded by an int (characters, code points...),
+ * which finds the class of a code without boxing it.
+ * <p>
+ * The labels of the language split the codes into intervals, in which all
+ * codes are accepted by the same labels. Each interval is evaluated once, on
+ * a representative token, and intervals with the same labels share the same
+ * class. The classes of the codes 0 to 0xFFFF are kept in an array ; the
+ * other codes are found by binary search.</p>
+ * <p>
+ * For characters, labels whose structure is unknown are simply evaluated on
+ * every char. The elements of the sets of inSet() and notInSet() are only
+ * enumerated if the set compares them by their value : a set built with a
+ * comparator is an unknown label.</p>
+ *
+ * @author rosmord
+ * @param <T> the token type.
+ */
+final class PrimitiveClassTable<T> implements TokenClassifier<T> {
+
+    private static final int DIRECT_SIZE = 0x10000;
+
+    private final ToIntFunction<? super T> code;
+    /**
+     * The first codes of the intervals, except the first one.
+     */
+    private final int[] bounds;
+    /**
+     * The class of each interval ; interval i is [bounds[i-1], bounds[i]).
+     */
+    private final int[] intervalClasses;
+    private final char[] direct;
+    private final int numberOfClasses;
+
+    private PrimitiveClassTable(List<LazyLabelIF<T>> labels, int[] bounds, int min, ToIntFunction<? super T> code, IntFunction<T> token) {
+        this.code = code;
+        this.bounds = bounds;
+        this.intervalClasses = new int[bounds.length + 1];
+        HashMap<BitSet, Integer> classes = new HashMap<>();
+        for (int i = 0; i < intervalClasses.length; i++) {
+            T representative = token.apply(i == 0 ? min : bounds[i - 1]);
+            BitSet signature = new BitSet(labels.size());
+            for (int j = 0; j < labels.size(); j++) {
+                if (labels.get(j).matches(representative)) {
+                    signature.set(j);
+                }
+            }
+            Integer c = classes.get(signature);
+            if (c == null) {
+                c = classes.size();
+                classes.put(signature, c);
+            }
+            intervalClasses[i] = c;
+        }
+        this.numberOfClasses = classes.size();
+        if (numberOfClasses > DIRECT_SIZE) {
+            throw new IllegalArgumentException("too many token classes : " + numberOfClasses);
+        }
+        this.direct = new char[DIRECT_SIZE];
+        for (int i = 0; i < DIRECT_SIZE; i++) {
+            direct[i] = (char) intervalClasses[interval(i)];
+        }
+    }
+
+    /**
+     * Builds the table for languages on characters.
+     *
+     * @param languages
+     * @return
+     * @throws IllegalArgumentException if a language is unknown.
+     */
+    static PrimitiveClassTable<Character> forChars(Collection<? extends RegularLanguageIF<Character>> languages) {
+        List<LazyLabelIF<Character>> labels = labels(languages);
+        TreeSet<Integer> bounds = new TreeSet<>();
+        boolean known = true;
+        for (LazyLabelIF<Character> label : labels) {
+            known &= addBounds(label, c -> c, bounds);
+        }
+        if (!known) {
+            // Evaluate every char.
+            for (int i = 1; i < DIRECT_SIZE; i++) {
+                bounds.add(i);
+            }
+        }
+        bounds.removeIf(b -> b <= 0 || b >= DIRECT_SIZE);
+        return new PrimitiveClassTable<>(labels, toArray(bounds), 0, c -> c, i -> (char) i);
+    }
+
+    /**
+     * Builds the table for languages on integers.
+     *
+     * @param languages
+     * @return
+     * @throws IllegalArgumentException if a language or a label is unknown.
+     */
+    static PrimitiveClassTable<Integer> forInts(Collection<? extends RegularLanguageIF<Integer>> languages) {
+        List<LazyLabelIF<Integer>> labels = labels(languages);
+        TreeSet<Integer> bounds = new TreeSet<>();
+        for (LazyLabelIF<Integer> label : labels) {
+            if (!addBounds(label, i -> i, bounds)) {
+                throw new IllegalArgumentException("can't analyze label " + label);
+            }
+        }
+        bounds.remove(Integer.MIN_VALUE);
+        return new PrimitiveClassTable<>(labels, toArray(bounds), Integer.MIN_VALUE, i -> i, i -> i);
+    }
+
+    private static <T> List<LazyLabelIF<T>> labels(Collection<? extends RegularLanguageIF<T>> languages) {
+        List<LazyLabelIF<T>> labels = MintermClassifier.collectLabels(languages);
+        if (labels == null) {
+            throw new IllegalArgumentException("can't analyze " + languages);
+        }
+        return labels;
+    }
+
+    /**
+     * Adds the first code of the intervals which a label distinguishes.
+     *
+     * @return false if the label is unknown.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> boolean addBounds(LazyLabelIF<T> label, ToIntFunction<? super T> code, TreeSet<Integer> bounds) {
+        // Public label classes may be subclassed : test the exact class.
+        Class<?> c = label.getClass();
+        if (c == AnyTokenLabel.class) {
+            return true;
+        } else if (c == SimpleLabel.class) {
+            int t = code.applyAsInt(((SimpleLabel<T>) label).getToken());
+            addInterval(t, t, bounds);
+            return true;
+        } else if (c == SetLabel.class) {
+            return addSet(((SetLabel<T>) label).getPossibleTokens(), code, bounds);
+        } else if (c == ComplementSetLabel.class) {
+            return addSet(((ComplementSetLabel<T>) label).getImpossibleTokens(), code, bounds);
+        } else if (c == DispatchLabel.class) {
+            DispatchLabel<T> d = (DispatchLabel<T>) label;
+            for (T t : d.getTokens()) {
+                addInterval(code.applyAsInt(t), code.applyAsInt(t), bounds);
+            }
+            for (LazyLabelIF<T> l : d.getSets()) {
+                if (!addBounds(l, code, bounds)) {
+                    return false;
+                }
+            }
+            for (LazyLabelIF<T> l : d.getFallback()) {
+                if (!addBounds(l, code, bounds)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (c == ComplementLabel.class) {
+            return addBounds(((ComplementLabel<T>) label).getComplementedLabel(), code, bounds);
+        } else if (c == RangeLabel.class) {
+            RangeLabel<?> r = (RangeLabel<?>) label;
+            addInterval(code.applyAsInt((T) r.getLow()), code.applyAsInt((T) r.getHigh()), bounds);
+            return true;
+        } else if (c == OutOfRangeLabel.class) {
+            OutOfRangeLabel<?> r = (OutOfRangeLabel<?>) label;
+            addInterval(code.applyAsInt((T) r.getLow()), code.applyAsInt((T) r.getHigh()), bounds);
+            return true;
+        } else if (c == BitSetLabel.class) {
+            BitSet codes = ((BitSetLabel<T>) label).getCodes();
+            for (int i = codes.nextSetBit(0); i >= 0; i = codes.nextSetBit(i)) {
+                int end = codes.nextClearBit(i);
+                addInterval(i, end - 1, bounds);
+                i = end;
+            }
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Adds the codes of the elements of a set, if the set compares them by
+     * their value (hash sets, and sorted sets in natural order).
+     *
+     * @return false if the set can't be enumerated.
+     */
+    private static <T> boolean addSet(Set<T> set, ToIntFunction<? super T> code, TreeSet<Integer> bounds) {
+        if (!SetLabel.isHashSet(set) && !(set instanceof SortedSet && ((SortedSet<T>) set).comparator() == null)) {
+            return false;
+        }
+        for (T t : set) {
+            addInterval(code.applyAsInt(t), code.applyAsInt(t), bounds);
+        }
+        return true;
+    }
+
+    private static void addInterval(int low, int high, TreeSet<Integer> bounds) {
+        bounds.add(low);
+        if (high != Integer.MAX_VALUE) {
+            bounds.add(high + 1);
+        }
+    }
+
+    private static int[] toArray(TreeSet<Integer> bounds) {
+        int[] result = new int[bounds.size()];
+        int i = 0;
+        for (int b : bounds) {
+            result[i++] = b;
+        }
+        return result;
+    }
+
+    /**
+     * The index of the interval which contains a code.
+     */
+    private int interval(int c) {
+        int low = 0, high = bounds.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (bounds[mid] <= c) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * The class of a code.
+     *
+     * @param c
+     * @return
+     */
+    int classOf(int c) {
+        if (c >= 0 && c < DIRECT_SIZE) {
+            return direct[c];
+        } else {
+            return intervalClasses[interval(c)];
+        }
+    }
+
+    @Override
+    public int classify(T token) {
+        return classOf(code.applyAsInt(token));
+    }
+
+    /**
+     * The number of classes ; all class numbers are smaller.
+     *
+     * @return
+     */
+    int getNumberOfClasses() {
+        return numberOfClasses;
+    }
+}
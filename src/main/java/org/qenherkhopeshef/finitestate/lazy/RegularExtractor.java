@@ -111,6 +111,33 @@ public class RegularExtractor<T> {
 
     private final List<RegularLanguageIF<T>> language;
     private final int postContextSize;
+    private final CacheBudget cacheBudget;
+    private final TokenClassifier<? super T> classifier;
+    private final boolean twoPhase;
+    /**
+     * The language used for searches : skip(), followed by the parts.
+     */
+    private final SequenceLanguage<T> searchLanguage;
+    private final SequenceLanguage<T> anchoredLanguage;
+    /**
+     * Per-thread transition caches, if determinization was required.
+     */
+    private final ThreadLocal<LazyDFA<T>> searchCache;
+    private final ThreadLocal<LazyDFA<T>> anchoredCache;
+    /**
+     * The reverse of the anchored language (null if it can't be built), to
+     * find the start of the matches in two phases searches.
+     */
+    private final RegularLanguageIF<T> reverseLanguage;
+    /**
+     * The literal tokens all matches contain, or null if none is known.
+     */
+    private final Prefilter<T> prefilter;
+    /**
+     * The search for literal parts, or null if some part is not literal.
+     */
+    private final LiteralSearch<T> literalSearch;
+    private final CacheStatistics cacheStatistics = new CacheStatistics();
 
     /**
      * Builds an extractor for the sequence of languages described in parts. If
@@ -120,11 +147,7 @@ public class RegularExtractor<T> {
      * @param parts a list of languages ; if empty, see above.
      */
     public RegularExtractor(List<RegularLanguageIF<T>> parts) {
-        if (parts == null || parts.isEmpty()) {
-            parts = Arrays.asList(RegularLanguageFactory.emptySequence());
-        }
-        this.language = new ArrayList<>(parts);
-        this.postContextSize = 0;
+        this(parts, 0, null, null, false);
     }
 
     /**
@@ -137,17 +160,41 @@ public class RegularExtractor<T> {
      */
     @SafeVarargs
     public RegularExtractor(RegularLanguageIF<T>... parts) {
-        if (parts == null || parts.length == 0) {
-            this.language = Arrays.asList(RegularLanguageFactory.emptySequence());
-        } else {
-            this.language = new ArrayList<>(Arrays.asList(parts));
-        }
-        this.postContextSize = 0;
+        this(parts == null ? null : Arrays.asList(parts), 0, null, null, false);
     }
 
-    private RegularExtractor(List<RegularLanguageIF<T>> parts, int postContextSize) {
-        this.language = new ArrayList<>(parts);
+    /**
+     * @param cacheBudget the limits of the transition caches, or null if
+     * the language should not be determinized.
+     * @param classifier the token classifier for the transition caches, or
+     * null if transitions should be cached per token.
+     * @param twoPhase true if searches should find the limits of the matches
+     * before the limits of their parts.
+     */
+    private RegularExtractor(List<RegularLanguageIF<T>> parts, int postContextSize, CacheBudget cacheBudget, TokenClassifier<? super T> classifier, boolean twoPhase) {
+        if (parts == null || parts.isEmpty()) {
+            parts = Arrays.asList(RegularLanguageFactory.emptySequence());
+        }
+        this.language = LanguageOptimizer.optimizeParts(parts);
         this.postContextSize = postContextSize;
+        this.cacheBudget = cacheBudget;
+        this.classifier = classifier;
+        this.twoPhase = twoPhase;
+        List<RegularLanguageIF<T>> toMatch = new ArrayList<>();
+        toMatch.add(RegularLanguageFactory.skip());
+        toMatch.addAll(language);
+        this.searchLanguage = new SequenceLanguage<>(toMatch);
+        this.anchoredLanguage = new SequenceLanguage<>(language);
+        this.reverseLanguage = twoPhase ? LanguageReverser.reverse(anchoredLanguage) : null;
+        this.prefilter = Prefilter.of(anchoredLanguage);
+        this.literalSearch = LiteralSearch.of(language);
+        if (cacheBudget != null) {
+            this.searchCache = ThreadLocal.withInitial(() -> new LazyDFA<>(searchLanguage, cacheBudget, cacheStatistics, classifier));
+            this.anchoredCache = ThreadLocal.withInitial(() -> new LazyDFA<>(anchoredLanguage, cacheBudget, cacheStatistics, classifier));
+        } else {
+            this.searchCache = null;
+            this.anchoredCache = null;
+        }
     }
 
     /**
@@ -165,7 +212,7 @@ public class RegularExtractor<T> {
     public static <T> RegularExtractor<T> buildRegularExtractorWithPostContext(List<RegularLanguageIF<T>> mainLanguage, List<RegularLanguageIF<T>> postContext) {
         List<RegularLanguageIF<T>> allParts = new ArrayList<>(mainLanguage);
         allParts.addAll(postContext);
-        return new RegularExtractor<>(allParts, postContext.size());
+        return new RegularExtractor<>(allParts, postContext.size(), null, null, false);
     }
 
     /**
@@ -196,51 +243,59 @@ public class RegularExtractor<T> {
      * be limited.
      * <p>
      * It's possible to actually build a regular language with a max length, but
-     * the resulting system is quite resource-heavy.
+     * the resulting system is quite resource-heavy. Here, the paths which
+     * become too long are dropped while the input is read, and the search
+     * remains a single pass.
      *
      * @param input the input to search in.
      * @param maxLength the max length of matched text.
      * @return
      */
     public List<MatchResult> search(List<T> input, int maxLength) {
-        List<RegularLanguageIF<T>> toMatch = new ArrayList<>();
-        toMatch.add(RegularLanguageFactory.skip());
-        toMatch.addAll(language);
-        ReportingLanguageRecognizer<T> aux = new ReportingLanguageRecognizer<>(toMatch);
-        aux.setEarlyStop(true);
-        ArrayList<MatchResult> result = new ArrayList<>();
-        boolean ok;
-        // start of search position
-        int pos = 0;
-        do {
-            ok = aux.recognize(pos, input);
-            if (ok) {
-                int oldPos = pos;
-                List<Integer> positions = aux.getMarkers();
-
-                // Adds the result. Omit the post context, if any.
-                MatchResult matchResult = new MatchResult(positions.subList(0, positions.size() - postContextSize));
-                if (maxLength == 0 || matchResult.getMatchLength() <= maxLength) {
-                    result.add(matchResult);
-                    pos = matchResult.getLastPosition();
-                    // Failsafe system for empty match.
-                    if (pos == oldPos) {
-                        pos += 1;
-                    }
-                } else {
-                    // Failed match, look one step further.
-                    pos += 1;
-                }
+        return search(TokenInput.of(input), maxLength);
+    }
 
-                // Stop the search if position is out of input.
-                if (pos > input.size()) {
-                    ok = false;
-                }
-            }
-        } while (ok);
+    /**
+     * Search matches in an arbitrary input.
+     *
+     * @see #search(java.util.List, int)
+     */
+    List<MatchResult> search(TokenInput<T> input, int maxLength) {
+        Matcher<T> matcher = new Matcher<>(this, input, maxLength);
+        ArrayList<MatchResult> result = new ArrayList<>();
+        while (matcher.find()) {
+            result.add(matcher.getMatch());
+        }
         return result;
     }
 
+    /**
+     * Creates a matcher, which finds the matches in an input one at a time.
+     * <p>
+     * The extractor is the compiled, shareable, part of the search ; the
+     * matcher is the stateful part, which can be reset on another input and
+     * reused.</p>
+     *
+     * @param input the input to search in.
+     * @return a matcher, for use in the current thread.
+     * @see #search(java.util.List)
+     */
+    public Matcher<T> matcher(List<T> input) {
+        return matcher(input, 0);
+    }
+
+    /**
+     * Creates a matcher, with a max length constraint.
+     *
+     * @param input the input to search in.
+     * @param maxLength the max length of matched text (0 for no limit).
+     * @return a matcher, for use in the current thread.
+     * @see #search(java.util.List, int)
+     */
+    public Matcher<T> matcher(List<T> input, int maxLength) {
+        return new Matcher<>(this, TokenInput.of(input), maxLength);
+    }
+
     /**
      * Tries to recognize the beginning of a list of tokens, and returns a list
      * of positions indicating the matched languages parts.
@@ -272,12 +327,19 @@ public class RegularExtractor<T> {
      * contains a list of positions if a match took place.
      */
     public Optional<List<Integer>> recognizesBeginning(List<T> tokens) {
+        return recognizesBeginning(TokenInput.of(tokens));
+    }
+
+    /**
+     * @see #recognizesBeginning(java.util.List)
+     */
+    Optional<List<Integer>> recognizesBeginning(TokenInput<T> tokens) {
         if (postContextSize != 0) {
             throw new IllegalStateException("method not supported with post context");
         }
-        ReportingLanguageRecognizer<T> aux = new ReportingLanguageRecognizer<>(language);
+        ReportingLanguageRecognizer<T> aux = buildRecognizer(anchoredLanguage, anchoredCache);
         aux.setEarlyStop(true);
-        boolean ok = aux.recognize(tokens);
+        boolean ok = aux.recognize(0, tokens);
         if (ok) {
             return Optional.of(aux.getMarkers());
         } else {
@@ -316,13 +378,20 @@ public class RegularExtractor<T> {
      * contains a list of positions if a match took place.
      */
     public Optional<List<Integer>> recognizesAll(List<T> tokens) {
+        return recognizesAll(TokenInput.of(tokens));
+    }
+
+    /**
+     * @see #recognizesAll(java.util.List)
+     */
+    Optional<List<Integer>> recognizesAll(TokenInput<T> tokens) {
         if (postContextSize != 0) {
             throw new IllegalStateException("method not supported with post context");
         }
 
-        ReportingLanguageRecognizer<T> aux = new ReportingLanguageRecognizer<>(language);
+        ReportingLanguageRecognizer<T> aux = buildRecognizer(anchoredLanguage, anchoredCache);
         aux.setEarlyStop(false);
-        boolean ok = aux.recognize(tokens);
+        boolean ok = aux.recognize(0, tokens);
         if (ok) {
             return Optional.of(aux.getMarkers());
         } else {
@@ -330,6 +399,315 @@ public class RegularExtractor<T> {
         }
     }
 
+    /**
+     * Returns the hit, miss and eviction counters of the transition caches,
+     * shared by all threads.
+     * <p>
+     * If the extractor was not determinized, the counters stay at 0.</p>
+     *
+     * @return the cache statistics.
+     * @see Builder#determinize()
+     */
+    public CacheStatistics getCacheStatistics() {
+        return cacheStatistics;
+    }
+
+    /**
+     * The parts of the language (including the post context, if any).
+     */
+    List<RegularLanguageIF<T>> getParts() {
+        return language;
+    }
+
+    int getPostContextSize() {
+        return postContextSize;
+    }
+
+    /**
+     * Creates a search recognizer with its own transition cache (if the
+     * extractor is determinized), for use outside of the current thread.
+     */
+    ReportingLanguageRecognizer<T> newSearchRecognizer() {
+        return new ReportingLanguageRecognizer<>(newDfa(searchLanguage));
+    }
+
+    /**
+     * Creates an automaton with its own transition cache (if the extractor is
+     * determinized), for a user which keeps states between calls : the
+     * eviction of the shared caches would release them.
+     */
+    private LazyDFA<T> newDfa(RegularLanguageIF<T> l) {
+        if (cacheBudget == null) {
+            return new LazyDFA<>(l, false);
+        } else {
+            return new LazyDFA<>(l, cacheBudget, cacheStatistics, classifier);
+        }
+    }
+
+    /**
+     * Returns a determinized copy of this extractor, which caches transitions
+     * per token class.
+     *
+     * @param classifier
+     * @return
+     */
+    RegularExtractor<T> withClassifier(TokenClassifier<? super T> classifier) {
+        return new RegularExtractor<>(language, postContextSize,
+                cacheBudget == null ? CacheBudget.DEFAULT : cacheBudget, classifier, twoPhase);
+    }
+
+    /**
+     * Creates a recognizer for one of our languages, using the transition cache
+     * of the current thread if there is one.
+     */
+    private ReportingLanguageRecognizer<T> buildRecognizer(SequenceLanguage<T> l, ThreadLocal<LazyDFA<T>> cache) {
+        if (cache == null) {
+            return new ReportingLanguageRecognizer<>(new LazyDFA<>(l, false));
+        } else {
+            return new ReportingLanguageRecognizer<>(cache.get());
+        }
+    }
+
+    /**
+     * Finds the matches of a {@link RegularExtractor} in an input, one at a
+     * time, as {@link java.util.regex.Matcher} does for a pattern.
+     * <p>
+     * The recognizers and the buffers of a matcher are kept when it's reset on
+     * a new input : for many small inputs, reusing a matcher saves most
+     * allocations.</p>
+     * <p>
+     * A matcher is <strong>not</strong> thread safe. Its search automaton has
+     * its own transition cache, as the matcher keeps states between two calls
+     * to {@link #find()} ; the parts of the matches are found with the caches
+     * of the thread which created it, or which last reset it.</p>
+     *
+     * @param <T> the token type.
+     */
+    public static final class Matcher<T> {
+
+        private final RegularExtractor<T> extractor;
+        private final int maxLength;
+        private TokenInput<T> input;
+        private Thread thread;
+        /**
+         * The recognizer for the search language, when neither the literal
+         * search nor the two phases search apply.
+         */
+        private ReportingLanguageRecognizer<T> searchRecognizer;
+        /**
+         * For two phases searches : finds the limits of the matches, and then
+         * those of their parts.
+         */
+        private SpanFinder<T> spanFinder;
+        private ReportingLanguageRecognizer<T> partsRecognizer;
+        private Prefilter<T>.Scanner scanner;
+        /**
+         * Start of search position.
+         */
+        private int start;
+        /**
+         * Position of the next token to read, for searchRecognizer.
+         */
+        private int pos;
+        private boolean finished;
+        private MatchResult match;
+
+        private Matcher(RegularExtractor<T> extractor, TokenInput<T> input, int maxLength) {
+            this.extractor = extractor;
+            this.maxLength = maxLength;
+            reset(input);
+        }
+
+        /**
+         * Searches the next match.
+         *
+         * @return true if a match was found.
+         */
+        public boolean find() {
+            match = null;
+            if (finished) {
+                return false;
+            }
+            if (usesRecognizer()) {
+                findWithRecognizer();
+            } else if (extractor.literalSearch != null) {
+                findLiterals();
+            } else {
+                findInTwoPhases();
+            }
+            if (match == null) {
+                finished = true;
+                return false;
+            }
+            int next = match.getLastPosition();
+            // Failsafe system for empty match.
+            if (next == start) {
+                next += 1;
+            }
+            // Stop the search if position is out of input.
+            if (next > input.size()) {
+                finished = true;
+            }
+            start = next;
+            pos = next;
+            if (searchRecognizer != null && !finished) {
+                searchRecognizer.start(start);
+            }
+            return true;
+        }
+
+        /**
+         * Returns the last match found.
+         *
+         * @return
+         * @throws IllegalStateException if the last call to find() failed, or
+         * if there was none.
+         */
+        public MatchResult getMatch() {
+            if (match == null) {
+                throw new IllegalStateException("no match available");
+            }
+            return match;
+        }
+
+        /**
+         * Restarts the search on a new input.
+         *
+         * @param input
+         * @return this matcher.
+         */
+        public Matcher<T> reset(List<T> input) {
+            return reset(TokenInput.of(input));
+        }
+
+        /**
+         * Restarts the search from the beginning of the input.
+         *
+         * @return this matcher.
+         */
+        public Matcher<T> reset() {
+            return reset(input);
+        }
+
+        Matcher<T> reset(TokenInput<T> input) {
+            this.input = input;
+            if (thread != Thread.currentThread()) {
+                // Use the caches of this thread.
+                thread = Thread.currentThread();
+                searchRecognizer = null;
+                spanFinder = null;
+                partsRecognizer = null;
+            }
+            start = 0;
+            pos = 0;
+            finished = false;
+            match = null;
+            scanner = extractor.prefilter == null ? null : extractor.prefilter.scanner(input);
+            if (usesRecognizer()) {
+                if (searchRecognizer == null) {
+                    searchRecognizer = extractor.newSearchRecognizer();
+                    // Paths longer than maxLength are dropped by the recognizer itself.
+                    searchRecognizer.setMaxLength(maxLength, extractor.postContextSize);
+                }
+                searchRecognizer.start(0);
+            }
+            return this;
+        }
+
+        /**
+         * Is the search done by the recognizer of the search language ? The
+         * faster searches don't handle a max length.
+         */
+        private boolean usesRecognizer() {
+            return maxLength != 0 || (extractor.literalSearch == null && !extractor.twoPhase);
+        }
+
+        /**
+         * Builds a match from its markers, omitting the post context, if
+         * any.
+         */
+        private MatchResult toMatch(List<Integer> positions) {
+            return new MatchResult(positions.subList(0, positions.size() - extractor.postContextSize));
+        }
+
+        /**
+         * Search when all parts are literal.
+         */
+        private void findLiterals() {
+            int[] markers = extractor.literalSearch.find(input, start);
+            if (markers != null) {
+                List<Integer> positions = new ArrayList<>(markers.length);
+                for (int m : markers) {
+                    positions.add(m);
+                }
+                match = toMatch(positions);
+            }
+        }
+
+        /**
+         * Search : find the limits of the match, then those of its parts.
+         */
+        private void findInTwoPhases() {
+            if (spanFinder == null) {
+                spanFinder = new SpanFinder<>(extractor.newDfa(extractor.searchLanguage),
+                        extractor.reverseLanguage == null ? null : extractor.newDfa(extractor.reverseLanguage));
+            }
+            if (!spanFinder.find(input, start, scanner)) {
+                return;
+            }
+            int matchStart = spanFinder.getStart();
+            int matchEnd = spanFinder.getEnd();
+            if (extractor.language.size() == 1) {
+                match = new MatchResult(matchStart, matchEnd);
+            } else {
+                if (partsRecognizer == null) {
+                    partsRecognizer = extractor.buildRecognizer(extractor.anchoredLanguage, extractor.anchoredCache);
+                    partsRecognizer.setEarlyStop(false);
+                }
+                partsRecognizer.recognize(0, input.subInput(matchStart, matchEnd));
+                List<Integer> positions = new ArrayList<>();
+                positions.add(matchStart);
+                for (int p : partsRecognizer.getMarkers()) {
+                    positions.add(p + matchStart);
+                }
+                match = toMatch(positions);
+            }
+        }
+
+        /**
+         * Search with the recognizer of the search language.
+         * <p>
+         * The input is read in one pass : after a match, the recognizer is
+         * simply reseeded at the end of the match, which is the current
+         * position. Only a post context makes us read some tokens again.</p>
+         */
+        private void findWithRecognizer() {
+            ReportingLanguageRecognizer<T> aux = searchRecognizer;
+            while (true) {
+                // When no match is in progress, the prefilter skips the tokens
+                // where no match can start.
+                if (scanner != null && !aux.isTerminal() && aux.isIdle()) {
+                    int candidate = scanner.next(pos);
+                    if (candidate < 0) {
+                        return;
+                    } else if (candidate > pos) {
+                        pos = candidate;
+                        aux.start(pos);
+                    }
+                }
+                if (aux.isTerminal()) {
+                    match = toMatch(aux.getMarkers());
+                    return;
+                } else if (pos < input.size() && !aux.isDead()) {
+                    aux.read(input, pos);
+                    pos++;
+                } else {
+                    return;
+                }
+            }
+        }
+    }
+
     /**
      * Returns a builder which will allow you to create a Regular extractor in
      * an easy way.
@@ -368,7 +746,11 @@ public class RegularExtractor<T> {
 
         private final ArrayList<RegularLanguageIF<T>> languages = new ArrayList<>();
         private int postContext = -1;
-        
+        private CacheBudget cacheBudget = null;
+        private TokenClassifier<? super T> classifier = null;
+        private boolean minterms = false;
+        private boolean twoPhase = false;
+
         Builder() {
         }
 
@@ -392,16 +774,128 @@ public class RegularExtractor<T> {
             return this;
         }
 
+        /**
+         * Asks the extractor to cache the lazy determinization of its
+         * language.
+         * <p>
+         * The sets of states met during the searches are kept, as well as the
+         * transitions between them, so that, in the steady state, reading a
+         * token is a table lookup. The results are the same as without the
+         * cache, but the extractor will use more memory. Each thread uses its
+         * own cache.</p>
+         * <p>
+         * The size of each cache is limited by {@link CacheBudget#DEFAULT}.</p>
+         *
+         * @return
+         * @see #cacheBudget(CacheBudget)
+         */
+        public Builder<T> determinize() {
+            return cacheBudget(CacheBudget.DEFAULT);
+        }
+
+        /**
+         * Asks the extractor to cache the lazy determinization of its
+         * language, with a given memory budget for each thread's cache.
+         * <p>
+         * When the budget is exceeded, states are evicted, and the search
+         * becomes slower, but not wrong.</p>
+         *
+         * @param budget the limits of the cache.
+         * @return
+         * @see #determinize()
+         * @see RegularExtractor#getCacheStatistics()
+         */
+        public Builder<T> cacheBudget(CacheBudget budget) {
+            if (budget == null) {
+                throw new NullPointerException("budget should not be null");
+            }
+            this.cacheBudget = budget;
+            return this;
+        }
+
+        /**
+         * Asks the extractor to cache transitions per token class, rather
+         * than per token.
+         * <p>
+         * All tokens in the same class must be accepted by the same labels.
+         * Each transition is then computed once per class, and reading a token
+         * costs one call to the classifier and an array lookup. This implies
+         * {@link #determinize()}, if no budget was given.</p>
+         *
+         * @param classifier
+         * @return
+         * @see TokenClassifier
+         */
+        public Builder<T> classifier(TokenClassifier<? super T> classifier) {
+            if (classifier == null) {
+                throw new NullPointerException("classifier should not be null");
+            }
+            this.classifier = classifier;
+            if (cacheBudget == null) {
+                cacheBudget = CacheBudget.DEFAULT;
+            }
+            return this;
+        }
+
+        /**
+         * Asks the extractor to compute a token classifier from the labels of
+         * its language.
+         * <p>
+         * The labels built by {@link RegularLanguageFactory} (exact(),
+         * inSet(), range(), their complements...) split the tokens into
+         * classes of tokens accepted by the same labels. At build time, they
+         * are analyzed, and a token's class is then found with a single hash
+         * lookup or binary search, instead of evaluating every label in every
+         * active state. Labels supplied with label() are evaluated once per
+         * token.</p>
+         * <p>
+         * If the language can't be analyzed (too many user-supplied labels),
+         * transitions are simply cached per token. An explicit
+         * {@link #classifier(TokenClassifier)} takes precedence. This implies
+         * {@link #determinize()}, if no budget was given.</p>
+         *
+         * @return
+         */
+        public Builder<T> minterms() {
+            this.minterms = true;
+            if (cacheBudget == null) {
+                cacheBudget = CacheBudget.DEFAULT;
+            }
+            return this;
+        }
+
+        /**
+         * Asks the extractor to search in two phases.
+         * <p>
+         * The limits of each match are found first, by an automaton which
+         * doesn't keep track of the limits of the parts. The limits of the
+         * parts are then computed on the matched text only. The results are
+         * the same, but the search is faster when the matches are few and the
+         * language has more than one part.</p>
+         * <p>
+         * Searches with a maximal length are not concerned.</p>
+         *
+         * @return
+         */
+        public Builder<T> twoPhase() {
+            this.twoPhase = true;
+            return this;
+        }
+
         /**
          * Actual creation of the extractor.
          *
          * @return
          */
         public RegularExtractor<T> build() {
+            TokenClassifier<? super T> classifier = this.classifier;
+            if (classifier == null && minterms) {
+                classifier = MintermClassifier.of(languages);
+            }
             if (postContext == -1)
-                return new RegularExtractor<>(languages);
+                return new RegularExtractor<>(languages, 0, cacheBudget, classifier, twoPhase);
             else
-                return new RegularExtractor<>(languages, postContext);
+                return new RegularExtractor<>(languages, postContext, cacheBudget, classifier, twoPhase);
         }
     }
 }
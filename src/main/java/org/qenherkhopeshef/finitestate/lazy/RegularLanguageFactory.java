@@ -36,6 +36,7 @@ package org.qenherkhopeshef.finitestate.lazy;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
@@ -97,6 +98,9 @@ public final class RegularLanguageFactory {
 
     /**
      * Builds a union of languages.
+     * <p>
+     * The single-token languages (exact(), inSet()...) of the union are
+     * merged into one, whose tokens are found with a single lookup.</p>
      *
      * @param <T> the token type.
      * @param elts
@@ -104,7 +108,26 @@ public final class RegularLanguageFactory {
      */
     public static <T> RegularLanguageIF<T> union(
             Collection<RegularLanguageIF<T>> elts) {
-        return new UnionLanguage<>(new ArrayList<>(elts));
+        List<LazyLabelIF<T>> labels = new ArrayList<>();
+        for (RegularLanguageIF<T> l : elts) {
+            if (l instanceof LabelLanguage) {
+                labels.add(((LabelLanguage<T>) l).getLabel());
+            }
+        }
+        if (labels.size() < 2) {
+            return new UnionLanguage<>(new ArrayList<>(elts));
+        }
+        LabelLanguage<T> merged = new LabelLanguage<>(new DispatchLabel<>(labels));
+        List<RegularLanguageIF<T>> children = new ArrayList<>();
+        for (RegularLanguageIF<T> l : elts) {
+            if (!(l instanceof LabelLanguage)) {
+                children.add(l);
+            } else if (merged != null) {
+                children.add(merged);
+                merged = null;
+            }
+        }
+        return children.size() == 1 ? children.get(0) : new UnionLanguage<>(children);
     }
 
     /**
@@ -181,6 +204,42 @@ public final class RegularLanguageFactory {
         return new ComplementLanguage<>(lang);
     }
 
+    /**
+     * Returns a version of a language which caches its lazy determinization.
+     * <p>
+     * The resulting language recognizes exactly the same lists as lang, but
+     * its {@link RegularLanguageIF#recognize(java.util.List)} method keeps, from
+     * one call to the next, the sets of states it has computed and the
+     * transitions between them. When the same language is used to recognize a
+     * large number of lists, most tokens are then processed by a simple table
+     * lookup.</p>
+     * <p>
+     * Each thread uses its own cache, limited by {@link CacheBudget#DEFAULT}.</p>
+     *
+     * @param <T>
+     * @param lang
+     * @return
+     */
+    public static <T> RegularLanguageIF<T> determinize(
+            RegularLanguageIF<T> lang) {
+        return determinize(lang, CacheBudget.DEFAULT);
+    }
+
+    /**
+     * Returns a version of a language which caches its lazy determinization,
+     * with a given memory budget for each thread's cache.
+     *
+     * @param <T>
+     * @param lang
+     * @param budget the limits of the cache.
+     * @return
+     * @see #determinize(RegularLanguageIF)
+     */
+    public static <T> RegularLanguageIF<T> determinize(
+            RegularLanguageIF<T> lang, CacheBudget budget) {
+        return new DeterminizedLanguage<>(lang, budget);
+    }
+
     /**
      * Build the emptyLanguage language. A languages which recognises no string
      * at all.
@@ -277,6 +336,32 @@ public final class RegularLanguageFactory {
                         new SetLabel<>(set)));
     }
 
+    /**
+     * A language which recognizes any one char in a bit set.
+     * <p>
+     * Char i is recognized if bit i is set. The bit set is copied.</p>
+     *
+     * @param chars
+     * @return
+     * @see CharRegularExtractor
+     */
+    public static RegularLanguageIF<Character> charSet(BitSet chars) {
+        return new LabelLanguage<>(BitSetLabel.forChars(chars));
+    }
+
+    /**
+     * A language which recognizes any one non-negative integer in a bit set.
+     * <p>
+     * The bit set is copied.</p>
+     *
+     * @param ints
+     * @return
+     * @see IntRegularExtractor
+     */
+    public static RegularLanguageIF<Integer> intSet(BitSet ints) {
+        return new LabelLanguage<>(BitSetLabel.forInts(ints));
+    }
+
     /**
      * Builds a language which recognizes a token in a range.
      * <p>
@@ -365,11 +450,7 @@ public final class RegularLanguageFactory {
         if (maxLength == 0) {
             return emptySequence();
         } else {
-            RegularLanguageIF<T> res = opt(any());
-            for (int i = 1; i < maxLength; i++) {
-                res = opt(seq(any(), res));
-            }
-            return res;
+            return repeat(any(), 0, maxLength);
         }
     }
 
@@ -384,11 +465,30 @@ public final class RegularLanguageFactory {
         if (length == 0) {
             return emptySequence();
         } else {
-            List<RegularLanguageIF<T>> res = new ArrayList<>();
-            for (int i = 0; i < length; i++) {
-                res.add(any());
-            }
-            return seq(res);
+            return repeat(any(), length, length);
+        }
+    }
+
+    /**
+     * The language of the concatenations of min to max words of l.
+     * <p>
+     * The equivalent of <code>l{min,max}</code> in regexps. The repetitions
+     * are counted, not unrolled, so large bounds are cheap.</p>
+     *
+     * @param <T>
+     * @param l the repeated language.
+     * @param min the minimal number of repetitions.
+     * @param max the maximal number of repetitions.
+     * @return
+     * @throws IllegalArgumentException if min &lt; 0 or max &lt; min.
+     */
+    public static <T> RegularLanguageIF<T> repeat(RegularLanguageIF<T> l, int min, int max) {
+        if (min < 0 || max < min) {
+            throw new IllegalArgumentException("bad repetition bounds " + min + ", " + max);
+        } else if (max == 0) {
+            return emptySequence();
+        } else {
+            return new RepeatLanguage<>(l, min, max);
         }
     }
 
@@ -408,4 +508,19 @@ public final class RegularLanguageFactory {
         }
         return seq(elts);
     }
+
+    /**
+     * The language of a list of words, such as a lexicon.
+     * <p>
+     * Equivalent to the union of the exactSequence() of the words, but the
+     * words are stored in a minimal automaton, where reading a token costs a
+     * single lookup whatever the number of words. Use it for large lists.</p>
+     *
+     * @param <T>
+     * @param words the words ; the collection is copied.
+     * @return
+     */
+    public static <T> RegularLanguageIF<T> lexicon(Collection<? extends List<T>> words) {
+        return new LexiconLanguage<>(words);
+    }
 }
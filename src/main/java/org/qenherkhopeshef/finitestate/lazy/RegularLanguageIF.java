@@ -27,9 +27,24 @@ public interface RegularLanguageIF<T> {
                 = getInitialStates();
         boolean terminal = false;
         for (T token : tokens) {
+            if (currentState.isEmpty()) {
+                // No live state left : the list can't be recognized.
+                return false;
+            }
             Set<MultiStateIF<T>> nextState = new HashSet<>();
-            for (MultiStateIF<T> state : currentState) {
-                nextState.addAll(state.accept(token));
+            LabelMemo memo = LabelMemo.begin(token);
+            try {
+                for (MultiStateIF<T> state : currentState) {
+                    for (MultiStateIF<T> next : state.accept(token)) {
+                        if (!next.isDead()) {
+                            nextState.add(next);
+                        }
+                    }
+                }
+            } finally {
+                if (memo != null) {
+                    memo.end();
+                }
             }
             currentState = nextState;
         }
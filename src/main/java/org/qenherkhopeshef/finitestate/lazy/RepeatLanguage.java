@@ -0,0 +1,222 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Counted repetition of a language : between min and max repetitions.
+ * <p>
+ * Instead of unrolling the repetitions (as in l.l.l.(l.(l)?)?), the states
+ * carry the number of repetitions already done, so that the size of the
+ * automaton doesn't depend on max.</p>
+ * <p>
+ * If the repeated language accepts the empty string, missing repetitions can
+ * always be empty, and min is ignored.</p>
+ * <p>
+ * With max = {@link #UNBOUNDED}, the count stops at min : l+ is then
+ * repeat(l, 1, UNBOUNDED), without a second copy of l.</p>
+ *
+ * @author rosmord
+ * @param <T> the token type.
+ */
+class RepeatLanguage<T> implements RegularLanguageIF<T> {
+
+    /**
+     * The max value for an unlimited number of repetitions.
+     */
+    static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    private final RegularLanguageIF<T> repeatedLanguage;
+    private final int min;
+    private final int max;
+    /**
+     * The canonical states, keyed by child state, count and initial flag.
+     */
+    private final StateTable<List<Object>, RepeatState> table = new StateTable<>();
+    /**
+     * The initial states of the first repetition.
+     */
+    private volatile Set<RepeatState> initialStates;
+    private final int hash;
+
+    /**
+     * @param repeatedLanguage
+     * @param min the minimal number of repetitions.
+     * @param max the maximal number of repetitions (positive), or
+     * UNBOUNDED.
+     */
+    RepeatLanguage(RegularLanguageIF<T> repeatedLanguage, int min, int max) {
+        if (min < 0 || max < min || max == 0) {
+            throw new IllegalArgumentException("bad repetition bounds " + min + ", " + max);
+        }
+        this.repeatedLanguage = repeatedLanguage;
+        this.max = max;
+        int effectiveMin = min;
+        for (MultiStateIF<T> s : repeatedLanguage.getInitialStates()) {
+            if (s.isTerminal()) {
+                effectiveMin = 0;
+            }
+        }
+        this.min = effectiveMin;
+        this.hash = Objects.hash(repeatedLanguage, this.min, max);
+    }
+
+    RegularLanguageIF<T> getRepeatedLanguage() {
+        return repeatedLanguage;
+    }
+
+    int getMin() {
+        return min;
+    }
+
+    int getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the canonical state.
+     */
+    private RepeatState state(MultiStateIF<T> childState, int count, boolean initial) {
+        List<Object> key = Arrays.asList(childState, count, initial);
+        RepeatState result = table.get(key);
+        if (result == null) {
+            result = table.intern(key, new RepeatState(childState, count, initial));
+        }
+        return result;
+    }
+
+    @Override
+    public Set<? extends MultiStateIF<T>> getInitialStates() {
+        Set<RepeatState> result = initialStates;
+        if (result == null) {
+            result = Collections.unmodifiableSet(startRepetition(0));
+            initialStates = result;
+        }
+        return result;
+    }
+
+    /**
+     * The states at the start of repetition count + 1.
+     */
+    private Set<RepeatState> startRepetition(int count) {
+        HashSet<RepeatState> states = new HashSet<>();
+        for (MultiStateIF<T> s : repeatedLanguage.getInitialStates()) {
+            if (!s.isDead()) {
+                states.add(state(s, count, true));
+            }
+        }
+        return states;
+    }
+
+    /**
+     * A state of the repeated language, during the repetition count + 1.
+     */
+    private class RepeatState extends AbstractMultiState<T> {
+
+        private final MultiStateIF<T> childState;
+        /**
+         * The number of repetitions already done.
+         */
+        private final int count;
+        /**
+         * Is this state at the start of the repetition ?
+         */
+        private final boolean initial;
+        private final int hash;
+
+        RepeatState(MultiStateIF<T> childState, int count, boolean initial) {
+            // Either we stop before this repetition, or at its end.
+            super((initial && count >= min)
+                    || (childState.isTerminal() && count + 1 >= min));
+            this.childState = childState;
+            this.count = count;
+            this.initial = initial;
+            this.hash = Objects.hash(childState, count, initial) + 31 * RepeatLanguage.this.hashCode();
+        }
+
+        @Override
+        public boolean isDead() {
+            return !terminal && childState.isDead();
+        }
+
+        @Override
+        public Set<? extends MultiStateIF<T>> accept(T token) {
+            HashSet<MultiStateIF<T>> result = new HashSet<>();
+            boolean hasNext = false;
+            for (MultiStateIF<T> newChildState : childState.accept(token)) {
+                if (newChildState.isDead()) {
+                    continue;
+                }
+                result.add(state(newChildState, count, false));
+                if (newChildState.isTerminal() && count + 1 < max && !hasNext) {
+                    // Without max, counting further than min is useless.
+                    result.addAll(startRepetition(max == UNBOUNDED ? Math.min(count + 1, min) : count + 1));
+                    hasNext = true;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public RegularLanguageIF<T> getParent() {
+            return RepeatLanguage.this;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            } else if (obj instanceof RepeatLanguage.RepeatState) {
+                RepeatState other = (RepeatState) obj;
+                return hash == other.hash
+                        && count == other.count
+                        && initial == other.initial
+                        && childState.equals(other.childState)
+                        && getParent().equals(other.getParent());
+            } else {
+                return false;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return "(REPEAT " + count + " " + childState + ")";
+        }
+    }
+
+    /**
+     * Two repetitions are equal if they repeat equal languages, with the same
+     * bounds.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        } else if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        RepeatLanguage<?> other = (RepeatLanguage<?>) obj;
+        return hash == other.hash && min == other.min && max == other.max
+                && repeatedLanguage.equals(other.repeatedLanguage);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "[REPEAT{" + min + "," + (max == UNBOUNDED ? "" : max) + "} " + repeatedLanguage + "]";
+    }
+}
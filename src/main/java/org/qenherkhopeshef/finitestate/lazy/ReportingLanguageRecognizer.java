@@ -1,7 +1,6 @@
 package org.qenherkhopeshef.finitestate.lazy;
 
 import java.util.*;
-import java.util.Map.Entry;
 
 /**
  * A specific language recognizer, which reports the limits where expressions
@@ -13,6 +12,11 @@ import java.util.Map.Entry;
  * <p>
  * TODO : have a closer look to "early stop". Currently, the system semantics regarding
  * what is matched are not that clear, and only well defined for earlyStop = true.
+ * <p>
+ * The recognizer works on the states of a {@link LazyDFA}. By default, the
+ * automaton doesn't cache anything, but a caching one can be supplied, in which
+ * case, reading a token is a table lookup, followed by the update of the
+ * markers along the transition edges.
  *
  * @param <T> the language to recognize.
  * @author Serge Rosmorduc (serge.rosmorduc@qenherkhopeshef.org)
@@ -20,21 +24,50 @@ import java.util.Map.Entry;
  */
 class ReportingLanguageRecognizer<T> {
 
-	private final SequenceLanguage<T> sequenceLanguage;
-	private List<Integer> markers = null;
+	private final LazyDFA<T> dfa;
+	/**
+	 * The best markers, when they have been computed.
+	 */
+	private int[] markers = null;
 	private boolean terminal;
 	private boolean earlyStop = true;
+	/**
+	 * The current state, for incremental recognition.
+	 */
+	private MarkedState currentState;
+	private int position;
+	/**
+	 * The maximal length of a match, or 0 if there is none.
+	 */
+	private int maxLength = 0;
+	/**
+	 * The index of the marker which ends the match, when there is a maximal
+	 * length.
+	 */
+	private int lastMatchedLanguage;
 
 	public ReportingLanguageRecognizer(List<RegularLanguageIF<T>> regularLanguage) {
-		this.sequenceLanguage = new SequenceLanguage<>(new ArrayList<>(regularLanguage));
+		this(new LazyDFA<>(new SequenceLanguage<>(new ArrayList<>(regularLanguage)), false));
 	}
 
 	@SafeVarargs
 	public ReportingLanguageRecognizer(RegularLanguageIF<T>... languages) {
-		List<RegularLanguageIF<T>> l = Arrays.asList(languages);
-		this.sequenceLanguage = new SequenceLanguage<T>(l);
+		this(Arrays.asList(languages));
 	}
 
+	/**
+	 * Builds a recognizer working on a given automaton.
+	 * <p>
+	 * Mainly used to share a transition cache between successive searches.
+	 *
+	 * @param dfa a lazy DFA, whose language must be a sequence language.
+	 */
+	ReportingLanguageRecognizer(LazyDFA<T> dfa) {
+		if (!(dfa.getLanguage() instanceof SequenceLanguage)) {
+			throw new IllegalArgumentException("The recognizer needs a sequence language");
+		}
+		this.dfa = dfa;
+	}
 
 	/**
 	 * Chooses if we want to stop as soon as possible.
@@ -47,6 +80,27 @@ class ReportingLanguageRecognizer<T> {
 	}
 
 
+	/**
+	 * Limits the length of the recognized text.
+	 * <p>
+	 * The length of a match is measured between its first marker (the end of
+	 * the first sub-language, which is the start of the match when this
+	 * language is skip()) and the marker of the last sub-language before the
+	 * post context.</p>
+	 * <p>
+	 * Paths which exceed the limit are dropped while reading. As a given
+	 * state can be reached by paths starting at different positions, each
+	 * state keeps the best markers for each start position (at most
+	 * maxLength + 1 of them).</p>
+	 *
+	 * @param maxLength the maximal length, or 0 for no limit.
+	 * @param postContextSize the number of sub-languages in the post context.
+	 */
+	void setMaxLength(int maxLength, int postContextSize) {
+		this.maxLength = maxLength;
+		this.lastMatchedLanguage = ((SequenceLanguage<T>) dfa.getLanguage()).getChildren().size() - 1 - postContextSize;
+	}
+
 	/**
 	 * Do we seek the shortest match (default) or to match all tokens ?
 	 *
@@ -94,52 +148,137 @@ class ReportingLanguageRecognizer<T> {
 	 * @return true iff a terminal state was reached <em>while</em> reading the list of tokens.
 	 */
 	public boolean recognize(int startPos, List<T> tokens) {
+		return recognize(startPos, TokenInput.of(tokens));
+	}
+
+	/**
+	 * Recognizes an arbitrary input.
+	 *
+	 * @param startPos the first position to search. 0 for beginning of the input.
+	 * @param tokens
+	 * @return true iff a terminal state was reached <em>while</em> reading the input.
+	 * @see #recognize(int, java.util.List)
+	 */
+	boolean recognize(int startPos, TokenInput<T> tokens) {
+		start(startPos);
+		// Now, read tokens until either the list has been seen, a terminal
+		// position has been reached, or no live state remains.
+		for (int pos = startPos; pos < tokens.size() && !(terminal && earlyStop)
+				&& !isDead(); pos++) {
+			read(tokens, pos);
+		}
+		return terminal;
+	}
+
+	/**
+	 * Starts an incremental recognition.
+	 * <p>
+	 * The tokens are then given one at a time to {@link #read(TokenInput, int)}.
+	 * After each step, {@link #isTerminal()} tells if the text read so far is
+	 * recognized, in which case the markers are available.
+	 *
+	 * @param startPos the position of the first token.
+	 */
+	void start(int startPos) {
+		position = startPos;
+		currentState = new MarkedState(dfa.getInitialState(), startPos);
+		updateTerminal();
+	}
+
+	/**
+	 * Reads the next token in an incremental recognition.
+	 *
+	 * @param tokens the input.
+	 * @param pos the position of the token, which must be the current position.
+	 */
+	void read(TokenInput<T> tokens, int pos) {
+		currentState = accept(currentState, tokens.next(dfa, currentState.state, pos), pos + 1);
+		position = pos + 1;
+		updateTerminal();
+	}
+
+	private void updateTerminal() {
+		terminal = currentState.isTerminal();
+		// The "best" markers are computed when needed.
 		markers = null;
-		terminal = false;
-		MarkedState currentState = new MarkedState(
-				sequenceLanguage.getInitialStates(), startPos);
-		// Now, read tokens until either the list has been seen or a terminal
-		// position has been reached.
-		for (int pos = startPos; pos < tokens.size() && !(terminal && earlyStop); pos++) {
-			T token = tokens.get(pos);
-			currentState = accept(currentState, token, pos + 1);
+	}
+
+	private int[] bestMarkers() {
+		if (markers == null && terminal) {
+			markers = currentState.getBestTerminalMarker();
 		}
+		return markers;
+	}
 
-		if (terminal) {
-			// Find a candidate "best" state.
-			SequenceLanguage<T>.SequenceState best = null;
-			List<Integer> bestMark = null;
-			for (Entry<SequenceLanguage<T>.SequenceState, ArrayList<Integer>> entry : currentState.markerMap
-					.entrySet()) {
-				if (entry.getKey().isTerminal()) {
-					if (best == null
-							|| isBetterMark(entry.getValue(), bestMark)) {
-						best = entry.getKey();
-						bestMark = entry.getValue();
-					}
+	/**
+	 * Is the text read so far recognized ?
+	 *
+	 * @return
+	 */
+	boolean isTerminal() {
+		return terminal;
+	}
+
+	/**
+	 * Is there no live state left (hence, no possible match) ?
+	 *
+	 * @return
+	 */
+	boolean isDead() {
+		return currentState.isDead();
+	}
+
+	/**
+	 * Is no match in progress ?
+	 *
+	 * @return
+	 * @see LazyDFA#isIdle(LazyDFA.State)
+	 */
+	boolean isIdle() {
+		return dfa.isIdle(currentState.state);
+	}
+
+	/**
+	 * The smallest position recorded in the markers of the current states, or
+	 * the current position if there is none.
+	 * <p>
+	 * The tokens before this position can't be part of the markers of any
+	 * future match.</p>
+	 *
+	 * @return
+	 */
+	int getEarliestMarker() {
+		int result = position;
+		for (int i = 0; i < currentState.state.size(); i++) {
+			for (int[] m : currentState.markersOf(i)) {
+				if (m.length > 0) {
+					result = Math.min(result, m[0]);
 				}
 			}
-			markers = bestMark;
 		}
-		return terminal;
+		return result;
 	}
 
 	/**
-	 * Accept a token, and returns the corresponding new state (with markers).
+	 * Follows the transition for a token, and returns the corresponding new
+	 * state (with markers).
 	 *
 	 * @param current
-	 * @param token
+	 * @param transition the transition for the token, from current.
 	 * @param pos
 	 * @return
 	 */
-	private MarkedState accept(MarkedState current, T token, int pos) {
-		MarkedState next = new MarkedState();
-		for (SequenceLanguage<T>.SequenceState currentState : current.children) {
-			ArrayList<Integer> currentStateMarker = current
-					.getMarker(currentState);
-			for (SequenceLanguage<T>.SequenceState nextState : currentState
-					.accept(token)) {
-				next.addState(currentState, nextState, currentStateMarker, pos);
+	private MarkedState accept(MarkedState current, LazyDFA.Transition<T> transition, int pos) {
+		MarkedState next = new MarkedState(transition.getTarget());
+		for (int edge = 0; edge < transition.getNumberOfEdges(); edge++) {
+			int source = transition.getEdgeSource(edge);
+			if (current.candidates == null) {
+				next.addState(current.getChild(source), transition.getEdgeTarget(edge),
+						current.markers[source], pos);
+			} else if (current.candidates[source] != null) {
+				for (int[] m : current.candidates[source]) {
+					next.addState(current.getChild(source), transition.getEdgeTarget(edge), m, pos);
+				}
 			}
 		}
 		return next;
@@ -153,10 +292,11 @@ class ReportingLanguageRecognizer<T> {
 	 * @return the ending position, or -1 if none.
 	 */
 	public int endingPosition() {
+		int[] markers = bestMarkers();
 		if (markers == null) {
 			return -1;
 		} else {
-			return markers.get(markers.size() - 1);
+			return markers[markers.length - 1];
 		}
 	}
 
@@ -176,8 +316,14 @@ class ReportingLanguageRecognizer<T> {
 	 * @return
 	 */
 	public List<Integer> getMarkers() {
+		int[] markers = bestMarkers();
 		if (markers != null) {
-			return new ArrayList<>(markers);
+			// The positions are only boxed for the result.
+			ArrayList<Integer> result = new ArrayList<>(markers.length);
+			for (int m : markers) {
+				result.add(m);
+			}
+			return result;
 		} else {
 			return null;
 		}
@@ -192,46 +338,108 @@ class ReportingLanguageRecognizer<T> {
 	 * @param marker2
 	 * @return
 	 */
-	private static boolean isBetterMark(List<Integer> marker1,
-										List<Integer> marker2) {
-		int l = Math.min(marker1.size(), marker2.size());
+	private static boolean isBetterMark(int[] marker1, int[] marker2) {
+		if (marker1 == marker2) {
+			return false;
+		}
+		int l = Math.min(marker1.length, marker2.length);
 		int i = 0;
-		while (i < l && marker1.get(i).equals(marker2.get(i))) {
+		while (i < l && marker1[i] == marker2[i]) {
 			i++;
 		}
 		// We are at the first position where elements are different.
 		if (i == l) {
-			return (marker1.size() < marker2.size());
+			return (marker1.length < marker2.length);
 		} else {
-			return marker1.get(i) < marker2.get(i);
+			return marker1[i] < marker2[i];
 		}
 	}
 
 	/**
-	 * A state here is a couple of a simple set of children states and
-	 * associated marker vectors.
+	 * A state here is a couple of a state of the lazy DFA (i.e. a set of
+	 * children states) and associated marker vectors.
+	 * <p>
+	 * markers[i] is the marker of the i-th member of the DFA state. Markers are
+	 * int arrays, which are never modified once built, so that they can be
+	 * shared between states (a new array is only built when a state crosses
+	 * the limit of a sub-language).
+	 * <p>
+	 * When the length of matches is limited, candidates[i] contains instead
+	 * the best marker for each possible start of the match, as a path which
+	 * is not the best one might be the only one short enough.
 	 *
 	 * @author Serge Rosmorduc (serge.rosmorduc@qenherkhopeshef.org)
 	 */
 	private class MarkedState {
-		// The markers for the states corresponding to the more recently read
-		// tokens.
 
-		public HashMap<SequenceLanguage<T>.SequenceState, ArrayList<Integer>> markerMap = new HashMap<>();
-		public Set<SequenceLanguage<T>.SequenceState> children = new HashSet<>();
+		private final LazyDFA.State<T> state;
+		private final int[][] markers;
+		private final ArrayList<int[]>[] candidates;
+
+		public MarkedState(LazyDFA.State<T> state) {
+			this.state = state;
+			if (maxLength == 0) {
+				this.markers = new int[state.size()][];
+				this.candidates = null;
+			} else {
+				this.markers = null;
+				@SuppressWarnings("unchecked")
+				ArrayList<int[]>[] c = (ArrayList<int[]>[]) new ArrayList<?>[state.size()];
+				this.candidates = c;
+			}
+		}
 
-	
 		/**
 		 * Builds a state for an arbitrary initial position.
 		 *
-		 * @param children
+		 * @param state the initial state of the DFA.
 		 * @param initialPosition the position at which we start to scan the text.
 		 */
-		public MarkedState(Set<SequenceLanguage<T>.SequenceState> children, int initialPosition) {
-			super();
-			ArrayList<Integer> emptyList = new ArrayList<>();
-			for (SequenceLanguage<T>.SequenceState child : children) {
-				addState(null, child, emptyList, initialPosition);
+		public MarkedState(LazyDFA.State<T> state, int initialPosition) {
+			this(state);
+			int[] emptyList = new int[0];
+			for (int i = 0; i < state.size(); i++) {
+				addState(null, i, emptyList, initialPosition);
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		public SequenceLanguage<T>.SequenceState getChild(int i) {
+			return (SequenceLanguage<T>.SequenceState) state.getMember(i);
+		}
+
+		public boolean isTerminal() {
+			if (candidates == null) {
+				return state.isTerminal();
+			}
+			for (int i = 0; i < candidates.length; i++) {
+				if (candidates[i] != null && getChild(i).isTerminal()) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		public boolean isDead() {
+			if (candidates == null) {
+				return state.size() == 0;
+			}
+			for (ArrayList<int[]> c : candidates) {
+				if (c != null) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * The markers of a member.
+		 */
+		public List<int[]> markersOf(int i) {
+			if (candidates == null) {
+				return markers[i] == null ? Collections.emptyList() : Collections.singletonList(markers[i]);
+			} else {
+				return candidates[i] == null ? Collections.emptyList() : candidates[i];
 			}
 		}
 
@@ -272,19 +480,16 @@ class ReportingLanguageRecognizer<T> {
 		 *
 		 * @param previousState   : the state before reaching this one (null if
 		 *                        this is an initial state).
-		 * @param childState      the state
+		 * @param childIndex      the index of the state in the DFA state.
 		 * @param previousMarkers the marker, <em>before</em> reaching this
 		 *                        state.
 		 * @param pos             the position after the token which made this state
 		 *                        reachable.
 		 */
 		private void addState(SequenceLanguage<T>.SequenceState previousState,
-							  SequenceLanguage<T>.SequenceState childState,
-							  ArrayList<Integer> previousMarkers, int pos) {
-			children.add(childState);
-			if (childState.isTerminal()) {
-				terminal = true;
-			}
+							  int childIndex,
+							  int[] previousMarkers, int pos) {
+			SequenceLanguage<T>.SequenceState childState = getChild(childIndex);
 
 			int previousLanguageIndex = -1;
 			if (previousState != null) {
@@ -292,7 +497,7 @@ class ReportingLanguageRecognizer<T> {
 			}
 
 			// Update the marker map...
-			ArrayList<Integer> nextStateMarker;
+			int[] nextStateMarker;
 			int markerSize;
 
 			if (previousLanguageIndex == childState.getChildIndex()
@@ -308,42 +513,93 @@ class ReportingLanguageRecognizer<T> {
 				} else {
 					markerSize = childState.getChildIndex();
 				}
-				nextStateMarker = new ArrayList<>(previousMarkers);
-				// We might have recognized more than one language at
-				// once (a language might recognize "").
-				while (nextStateMarker.size() < markerSize) {
-					nextStateMarker.add(pos);
-				}
-				// update the slot from previous language to current language if needed :
-				if (previousLanguageIndex >= 0 && previousLanguageIndex < childState.getChildIndex()) {
-					nextStateMarker.set(previousLanguageIndex, pos);
-				}
-				// If we are in a terminal state, update
-				if (childState.isTerminalForSubLanguage()) {
-					nextStateMarker.set(childState.getChildIndex(), pos);
+				boolean updatePrevious = previousLanguageIndex >= 0
+						&& previousLanguageIndex < childState.getChildIndex()
+						&& (previousLanguageIndex >= previousMarkers.length
+						|| previousMarkers[previousLanguageIndex] != pos);
+				boolean updateCurrent = childState.isTerminalForSubLanguage()
+						&& (childState.getChildIndex() >= previousMarkers.length
+						|| previousMarkers[childState.getChildIndex()] != pos);
+				if (markerSize <= previousMarkers.length && !updatePrevious && !updateCurrent) {
+					// Nothing changes (typically, in skip()).
+					nextStateMarker = previousMarkers;
+				} else {
+					// We might have recognized more than one language at
+					// once (a language might recognize "").
+					nextStateMarker = Arrays.copyOf(previousMarkers, Math.max(markerSize, previousMarkers.length));
+					Arrays.fill(nextStateMarker, previousMarkers.length, nextStateMarker.length, pos);
+					// update the slot from previous language to current language if needed :
+					if (previousLanguageIndex >= 0 && previousLanguageIndex < childState.getChildIndex()) {
+						nextStateMarker[previousLanguageIndex] = pos;
+					}
+					// If we are in a terminal state, update
+					if (childState.isTerminalForSubLanguage()) {
+						nextStateMarker[childState.getChildIndex()] = pos;
+					}
 				}
 			}
-			// update the map, iff the new marker is "better" than the
+			if (candidates != null) {
+				addCandidate(childState, childIndex, nextStateMarker, pos);
+				return;
+			}
+			// update the marker, iff the new marker is "better" than the
 			// old one.
-			if (!markerMap.containsKey(childState)
-					|| isBetterMark(nextStateMarker, getMarker(childState))) {
-				markerMap.put(childState, nextStateMarker);
+			if (markers[childIndex] == null
+					|| isBetterMark(nextStateMarker, markers[childIndex])) {
+				markers[childIndex] = nextStateMarker;
 			}
 		}
 
-		public MarkedState() {
-			super();
+		/**
+		 * Records a marker when the length of matches is limited : it's kept
+		 * if the match is still short enough, and if it's the best for its
+		 * start position.
+		 */
+		private void addCandidate(SequenceLanguage<T>.SequenceState childState, int childIndex,
+								  int[] marker, int pos) {
+			int start = marker.length == 0 ? pos : marker[0];
+			if (marker.length > 0) {
+				// The match will end at pos or later, unless we are in the
+				// post context.
+				int end = childState.getChildIndex() > lastMatchedLanguage ? marker[lastMatchedLanguage] : pos;
+				if (end - start > maxLength) {
+					return;
+				}
+			}
+			if (candidates[childIndex] == null) {
+				candidates[childIndex] = new ArrayList<>(2);
+			}
+			ArrayList<int[]> c = candidates[childIndex];
+			for (int i = 0; i < c.size(); i++) {
+				int[] other = c.get(i);
+				int otherStart = other.length == 0 ? pos : other[0];
+				if (otherStart == start) {
+					if (isBetterMark(marker, other)) {
+						c.set(i, marker);
+					}
+					return;
+				}
+			}
+			c.add(marker);
 		}
 
 		/**
-		 * Returns the marker currently associated with a state
+		 * Returns the best marker among the terminal states.
 		 *
-		 * @param currentState
-		 * @return
+		 * @return a marker, or null if no state is terminal.
 		 */
-		public ArrayList<Integer> getMarker(
-				SequenceLanguage<T>.SequenceState currentState) {
-			return markerMap.get(currentState);
+		public int[] getBestTerminalMarker() {
+			int[] bestMark = null;
+			for (int i = 0; i < state.size(); i++) {
+				if (getChild(i).isTerminal()) {
+					for (int[] m : markersOf(i)) {
+						if (bestMark == null || isBetterMark(m, bestMark)) {
+							bestMark = m;
+						}
+					}
+				}
+			}
+			return bestMark;
 		}
 	}
 
@@ -1,17 +1,19 @@
 package org.qenherkhopeshef.finitestate.lazy;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * A Sequence language represents the concatenation of a number of languages.
  * 
  * Those languages might recognize the emptySequence string.
  * 
- * TODO : cache states to avoid multiple states creations (maybe not needed :
- * the sets automatically do it ?).
+ * States are canonicalized : for each child, a {@link StateTable} keeps one
+ * SequenceState per child state.
  * 
  * <h3>Saving partial results (ideas)</h3>
  * <p>
@@ -49,6 +51,16 @@ import java.util.Set;
  */
 class SequenceLanguage<T> extends CompositeLanguage<T> {
 
+	/**
+	 * Canonical states, for each child.
+	 */
+	private final List<StateTable<MultiStateIF<T>, SequenceState>> tables;
+
+	/**
+	 * Cached results of {@link #statesStartingAt(int)}, computed on demand.
+	 */
+	private final AtomicReferenceArray<Set<SequenceState>> closures;
+
 	/**
 	 * Build a language corresponding to the sequence of L1...Ln where L1..Ln are all sub-languages in children.
 	 * if children is emptySequence, build a sequence recognizing the emptyString language (not the emptySequence language).
@@ -56,6 +68,26 @@ class SequenceLanguage<T> extends CompositeLanguage<T> {
 	 */
 	public SequenceLanguage(List<? extends RegularLanguageIF<T>> children) {
 		super(children.isEmpty()? Collections.singletonList(new EmptyStringLanguage<T>()): children);
+		tables = new ArrayList<>();
+		for (int i = 0; i < getChildren().size(); i++) {
+			tables.add(new StateTable<>());
+		}
+		closures = new AtomicReferenceArray<>(getChildren().size() + 1);
+	}
+
+	/**
+	 * Returns the canonical state for a child state.
+	 * @param childIndex
+	 * @param childState
+	 * @return
+	 */
+	private SequenceState state(int childIndex, MultiStateIF<T> childState) {
+		StateTable<MultiStateIF<T>, SequenceState> table = tables.get(childIndex);
+		SequenceState result = table.get(childState);
+		if (result == null) {
+			result = table.intern(childState, new SequenceState(childIndex, childState));
+		}
+		return result;
 	}
 
         @Override
@@ -67,6 +99,9 @@ class SequenceLanguage<T> extends CompositeLanguage<T> {
 	 * Returns the states for starting at a given place in the automaton.
 	 * <p>
 	 * The main reason is that the sub languages may recognize the emptySequence string.
+	 * <p>
+	 * The result only depends on childIndex ; it is computed once, and the
+	 * same unmodifiable set is returned afterwards.
 	 * 
 	 * @param childIndex
 	 *            the starting position. Note that if childIndex is too large,
@@ -74,6 +109,19 @@ class SequenceLanguage<T> extends CompositeLanguage<T> {
 	 * @return
 	 */
 	private Set<SequenceState> statesStartingAt(int childIndex) {
+		if (childIndex >= getChildren().size()) {
+			return Collections.emptySet();
+		}
+		Set<SequenceState> result = closures.get(childIndex);
+		if (result == null) {
+			// Several threads may compute it ; they will get equal results.
+			result = Collections.unmodifiableSet(computeStatesStartingAt(childIndex));
+			closures.set(childIndex, result);
+		}
+		return result;
+	}
+
+	private Set<SequenceState> computeStatesStartingAt(int childIndex) {
 		HashSet<SequenceState> result = new HashSet<>();
 
 		boolean nextReachable = true;
@@ -82,7 +130,9 @@ class SequenceLanguage<T> extends CompositeLanguage<T> {
 			nextReachable = false;
 			for (MultiStateIF<T> s : getChildren().get(childIndex)
 					.getInitialStates()) {
-				result.add(new SequenceState(childIndex, s));
+				if (s.isDead())
+					continue;
+				result.add(state(childIndex, s));
 				if (s.isTerminal())
 					nextReachable = true;
 			}
@@ -100,12 +150,31 @@ class SequenceLanguage<T> extends CompositeLanguage<T> {
 	public class SequenceState extends AbstractMultiState<T> {
 		private final int childIndex;
 		private final MultiStateIF<T> childState;
+		private final int hash;
+		private final boolean universal;
 
 		SequenceState(int childIndex, MultiStateIF<T> childState) {
 			super(childState.isTerminal()
 					&& childIndex == getChildren().size() - 1);
 			this.childIndex = childIndex;
 			this.childState = childState;
+			this.hash = childIndex + 31 * childState.hashCode() + 31 * 31
+					* SequenceLanguage.this.hashCode();
+			// Universal if the child is, and all following children accept
+			// the empty list.
+			this.universal = childState.isUniversal()
+					&& (childIndex == getChildren().size() - 1
+						|| containsTerminal(statesStartingAt(childIndex + 1)));
+		}
+
+		@Override
+		public boolean isDead() {
+			return childState.isDead();
+		}
+
+		@Override
+		public boolean isUniversal() {
+			return universal;
 		}
 
 		/**
@@ -126,10 +195,12 @@ class SequenceLanguage<T> extends CompositeLanguage<T> {
 			Set<? extends MultiStateIF<T>> outStates = childState.accept(token);
 
 			for (MultiStateIF<T> childState : outStates) {
+				if (childState.isDead())
+					continue;
 				if (childState.isTerminal()) {
 					result.addAll(statesStartingAt(childIndex + 1));
 				}
-				result.add(new SequenceState(childIndex, childState));
+				result.add(state(childIndex, childState));
 			}
 			return result;
 		}
@@ -154,10 +225,13 @@ class SequenceLanguage<T> extends CompositeLanguage<T> {
 
 		@Override
 		public boolean equals(Object o) {
-			if (o instanceof SequenceLanguage.SequenceState) {
+			if (this == o) {
+				return true;
+			} else if (o instanceof SequenceLanguage.SequenceState) {
 				@SuppressWarnings("unchecked")
 				SequenceState s = (SequenceState) o;
-				return this.getParent() == s.getParent()
+				return this.hash == s.hash
+						&& this.getParent().equals(s.getParent())
 						&& this.childIndex == s.childIndex
 						&& this.childState.equals(s.childState);
 			} else
@@ -166,8 +240,7 @@ class SequenceLanguage<T> extends CompositeLanguage<T> {
 
 		@Override
 		public int hashCode() {
-			return childIndex + 31 * childState.hashCode() + 31 * 31
-					* getParent().hashCode();
+			return hash;
 		}
 
                 @Override
@@ -198,6 +271,14 @@ class SequenceLanguage<T> extends CompositeLanguage<T> {
 		}
 	}
 
+	private static boolean containsTerminal(Set<? extends MultiStateIF<?>> states) {
+		for (MultiStateIF<?> s : states) {
+			if (s.isTerminal())
+				return true;
+		}
+		return false;
+	}
+
 	@Override
 	public String toString() {
 		return "[S " + getChildren().toString() + "]";
@@ -1,9 +1,14 @@
 package org.qenherkhopeshef.finitestate.lazy;
 
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
  * A label recognising any element in a set.
+ * <p>
+ * The set is not copied, and may change : two labels are equal if they use
+ * the same set.</p>
  * @author rosmord
  * @param <T> 
  */
@@ -14,11 +19,44 @@ public class SetLabel<T> implements LazyLabelIF<T>{
     public SetLabel(Set<T> possibleTokens) {
         this.possibleTokens = possibleTokens;
     }
+
+    Set<T> getPossibleTokens() {
+        return possibleTokens;
+    }
+
+    /**
+     * Does the set compare its elements with equals() and hashCode() ? Sets
+     * built with a comparator (TreeSet...) may not.
+     * @return 
+     */
+    boolean isHashSet() {
+        return isHashSet(possibleTokens);
+    }
+
+    static boolean isHashSet(Set<?> set) {
+        Class<?> c = set.getClass();
+        return c == HashSet.class || c == LinkedHashSet.class;
+    }
     
     
     @Override
     public boolean matches(T token) {
         return possibleTokens.contains(token);
     }
-    
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        } else if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        SetLabel<?> other = (SetLabel<?>) obj;
+        return possibleTokens == other.possibleTokens;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(possibleTokens);
+    }
 }
@@ -46,10 +46,29 @@ class SimpleLabel<T> implements LazyLabelIF<T> {
     public SimpleLabel(T toMatch) {
         this.toMatch = toMatch;
     }
+
+    T getToken() {
+        return toMatch;
+    }
     
     @Override
     public boolean matches(T token) {
         return toMatch.equals(token);
     }
-    
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        } else if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        SimpleLabel<?> other = (SimpleLabel<?>) obj;
+        return toMatch.equals(other.toMatch);
+    }
+
+    @Override
+    public int hashCode() {
+        return toMatch.hashCode();
+    }
 }
@@ -10,6 +10,10 @@ package org.qenherkhopeshef.finitestate.lazy;
 abstract class SingleChildState<T> extends AbstractMultiState<T> {
 
 	protected MultiStateIF<T> childState;
+	/**
+	 * Cached hash code (0 if not computed yet).
+	 */
+	private int hash;
 
 	public SingleChildState(MultiStateIF<T> childState,boolean terminal) {
 		super(terminal);
@@ -18,12 +22,14 @@ abstract class SingleChildState<T> extends AbstractMultiState<T> {
 
 	@Override
 	public boolean equals(Object obj) {
+		if (obj == this) return true;
 		if (obj == null) return false;
 		if (obj.getClass() != this.getClass()) {
 			return false;
 		} else {
 			SingleChildState<?> other = (SingleChildState<?>) obj;
-			return this.childState.equals(other.childState)
+			return this.hashCode() == other.hashCode()
+					&& this.childState.equals(other.childState)
 					&& this.terminal == other.terminal
 					&& this.getParent().equals(other.getParent());
 		}
@@ -31,7 +37,12 @@ abstract class SingleChildState<T> extends AbstractMultiState<T> {
 
 	@Override
 	public int hashCode() {
-		return this.childState.hashCode() + 31*this.getParent().hashCode();
+		int h = hash;
+		if (h == 0) {
+			h = this.childState.hashCode() + 31*this.getParent().hashCode();
+			hash = h;
+		}
+		return h;
 	}
 	
 	
@@ -0,0 +1,159 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.Arrays;
+
+/**
+ * Finds the limits of the next match of a search language (skip() followed
+ * by the parts of a {@link RegularExtractor}), without computing the limits of
+ * the parts.
+ * <p>
+ * Instead of a marker vector, each state of the automaton only carries the
+ * leftmost position where the match might have started (that is, where
+ * skip() ended). The match ends at the first terminal state, and starts at
+ * the leftmost position of its terminal members ; this is the match
+ * {@link ReportingLanguageRecognizer} would find.</p>
+ * <p>
+ * If the reverse of the language is available, the states don't even carry
+ * the start positions : once the end of the match is known, the reversed
+ * language is read backwards from there, and the match starts at the last
+ * position where it's terminal.</p>
+ * <p>
+ * This class is stateful, and hence not shareable.</p>
+ *
+ * @author rosmord
+ * @param <T> the token type.
+ */
+final class SpanFinder<T> {
+
+    private final LazyDFA<T> dfa;
+    private final LazyDFA<T> reverseDfa;
+    private int[] starts = new int[16];
+    private int[] nextStarts = new int[16];
+    private int matchStart = -1;
+    private int matchEnd = -1;
+
+    /**
+     * @param dfa an automaton for a sequence whose first element is skip().
+     * @param reverseDfa an automaton for the reverse of the rest of the
+     * sequence, or null.
+     */
+    SpanFinder(LazyDFA<T> dfa, LazyDFA<T> reverseDfa) {
+        this.dfa = dfa;
+        this.reverseDfa = reverseDfa;
+    }
+
+    /**
+     * Looks for the next match.
+     *
+     * @param input the input.
+     * @param from the position where the search starts.
+     * @param scanner a prefilter for the input, or null.
+     * @return true if a match was found.
+     */
+    boolean find(TokenInput<T> input, int from, Prefilter<T>.Scanner scanner) {
+        if (reverseDfa != null) {
+            return findEndThenStart(input, from, scanner);
+        }
+        LazyDFA.State<T> state = dfa.getInitialState();
+        matchEnd = from;
+        starts = ensureCapacity(starts, state.size());
+        Arrays.fill(starts, 0, state.size(), from);
+        for (int pos = from; !state.isTerminal(); pos++) {
+            if (scanner != null && dfa.isIdle(state)) {
+                int candidate = scanner.next(pos);
+                if (candidate < 0) {
+                    matchStart = matchEnd = -1;
+                    return false;
+                } else if (candidate > pos) {
+                    // The current starts can't lead to a match.
+                    pos = candidate;
+                    Arrays.fill(starts, 0, state.size(), pos);
+                }
+            }
+            if (pos >= input.size() || state.size() == 0) {
+                matchStart = matchEnd = -1;
+                return false;
+            }
+            LazyDFA.Transition<T> transition = input.next(dfa, state, pos);
+            LazyDFA.State<T> target = transition.getTarget();
+            nextStarts = ensureCapacity(nextStarts, target.size());
+            Arrays.fill(nextStarts, 0, target.size(), Integer.MAX_VALUE);
+            for (int edge = 0; edge < transition.getNumberOfEdges(); edge++) {
+                int source = transition.getEdgeSource(edge);
+                int dest = transition.getEdgeTarget(edge);
+                // While in skip(), the match would start after this token.
+                int start = childIndex(state, source) == 0 || childIndex(target, dest) == 0
+                        ? pos + 1 : starts[source];
+                if (start < nextStarts[dest]) {
+                    nextStarts[dest] = start;
+                }
+            }
+            int[] tmp = starts;
+            starts = nextStarts;
+            nextStarts = tmp;
+            state = target;
+            matchEnd = pos + 1;
+        }
+        matchStart = Integer.MAX_VALUE;
+        for (int i = 0; i < state.size(); i++) {
+            if (state.getMember(i).isTerminal() && starts[i] < matchStart) {
+                matchStart = starts[i];
+            }
+        }
+        return true;
+    }
+
+    private boolean findEndThenStart(TokenInput<T> input, int from, Prefilter<T>.Scanner scanner) {
+        LazyDFA.State<T> state = dfa.getInitialState();
+        int pos = from;
+        while (!state.isTerminal()) {
+            if (scanner != null && dfa.isIdle(state)) {
+                pos = scanner.next(pos);
+                if (pos < 0) {
+                    matchStart = matchEnd = -1;
+                    return false;
+                }
+            }
+            if (pos >= input.size() || state.size() == 0) {
+                matchStart = matchEnd = -1;
+                return false;
+            }
+            state = input.next(dfa, state, pos).getTarget();
+            pos++;
+        }
+        matchEnd = pos;
+        // Read backwards, for the leftmost start.
+        state = reverseDfa.getInitialState();
+        matchStart = matchEnd;
+        for (pos = matchEnd - 1; pos >= from && state.size() > 0; pos--) {
+            state = input.next(reverseDfa, state, pos).getTarget();
+            if (state.isTerminal()) {
+                matchStart = pos;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the start of the match found.
+     */
+    int getStart() {
+        return matchStart;
+    }
+
+    /**
+     * @return the end of the match found.
+     */
+    int getEnd() {
+        return matchEnd;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> int childIndex(LazyDFA.State<T> state, int i) {
+        return ((SequenceLanguage<T>.SequenceState) state.getMember(i)).getChildIndex();
+    }
+
+    private static int[] ensureCapacity(int[] array, int size) {
+        return array.length >= size ? array : new int[Math.max(size, 2 * array.length)];
+    }
+}
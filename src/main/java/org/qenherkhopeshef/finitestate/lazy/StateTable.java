@@ -0,0 +1,98 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A table of canonical states, for one language.
+ * <p>
+ * States are created again and again while reading a text, and put in hash
+ * sets. With a table, equal states are usually the same object : fewer objects
+ * are created, and equals is mostly a test of identity.</p>
+ * <p>
+ * Languages are often shared constants, which live as long as the program :
+ * the table only keeps weak references to the states, so that the states which
+ * are no longer used by a recognizer or a lazy DFA (for instance after an
+ * eviction) can be collected, and their entries are then removed. The key of a
+ * state must not refer to the state itself.</p>
+ * <p>
+ * Languages are shared between threads, so the table is thread safe. Its size
+ * is limited : when it's full, states are simply not canonicalized any more,
+ * which is slower, but still correct.</p>
+ *
+ * @author rosmord
+ * @param <K> the key which identifies a state in its language.
+ * @param <S> the state type.
+ */
+final class StateTable<K, S> {
+
+    static final int MAX_SIZE = 1 << 12;
+
+    private final ConcurrentHashMap<K, Entry<K, S>> states = new ConcurrentHashMap<>();
+    private final ReferenceQueue<S> collected = new ReferenceQueue<>();
+
+    /**
+     * Returns the canonical state for a key, if there is one.
+     *
+     * @param key
+     * @return the state, or null.
+     */
+    S get(K key) {
+        Entry<K, S> entry = states.get(key);
+        return entry == null ? null : entry.get();
+    }
+
+    /**
+     * Registers a new state, unless another thread was faster.
+     *
+     * @param key
+     * @param state a state, freshly built for key.
+     * @return the canonical state for key.
+     */
+    S intern(K key, S state) {
+        removeCollected();
+        if (states.size() >= MAX_SIZE) {
+            return state;
+        }
+        Entry<K, S> entry = new Entry<>(key, state, collected);
+        while (true) {
+            Entry<K, S> old = states.putIfAbsent(key, entry);
+            if (old == null) {
+                return state;
+            }
+            S oldState = old.get();
+            if (oldState != null) {
+                return oldState;
+            } else if (states.replace(key, old, entry)) {
+                return state;
+            }
+        }
+    }
+
+    /**
+     * Removes the entries of the states which were collected.
+     */
+    @SuppressWarnings("unchecked")
+    private void removeCollected() {
+        Entry<K, S> entry;
+        while ((entry = (Entry<K, S>) collected.poll()) != null) {
+            states.remove(entry.key, entry);
+        }
+    }
+
+    int size() {
+        removeCollected();
+        return states.size();
+    }
+
+    private static final class Entry<K, S> extends WeakReference<S> {
+
+        private final K key;
+
+        Entry(K key, S state, ReferenceQueue<S> queue) {
+            super(state, queue);
+            this.key = key;
+        }
+    }
+}
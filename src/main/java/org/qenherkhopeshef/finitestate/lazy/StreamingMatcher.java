@@ -0,0 +1,225 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A push-based version of {@link RegularExtractor#search(java.util.List)},
+ * for token streams which don't fit in memory.
+ * <p>
+ * Tokens are pushed one at a time (or in batches), and each match is given to
+ * a listener as soon as it's decided, that is, as soon as the shortest match
+ * is found. The matches are exactly those search() would find on the whole
+ * stream.</p>
+ * <p>
+ * The matcher doesn't keep the whole stream : only the tokens which might be
+ * read again, that is, those after the start of the earliest possible match
+ * when the extractor has a post context. Without post context, no token is
+ * kept.</p>
+ * <p>
+ * Positions are counted from the first pushed token. The matcher is not
+ * thread safe, but any number of matchers can be created from the same
+ * extractor. Exempli gratia:</p>
+ * <pre>
+ * StreamingMatcher&lt;Character&gt; matcher = new StreamingMatcher&lt;&gt;(extractor, m -&gt; System.out.println(m));
+ * for (char c : text.toCharArray()) {
+ *     matcher.push(c);
+ * }
+ * matcher.close();
+ * </pre>
+ *
+ * @author rosmord
+ * @param <T> the token type.
+ */
+public final class StreamingMatcher<T> {
+
+    private final ReportingLanguageRecognizer<T> recognizer;
+    private final int postContextSize;
+    private final Consumer<? super MatchResult> listener;
+
+    /**
+     * The tokens which might be read again ; window.get(0) is the token at
+     * windowStart.
+     */
+    private final ArrayList<T> window = new ArrayList<>();
+    private int windowStart = 0;
+    /**
+     * Number of tokens pushed so far.
+     */
+    private int size = 0;
+    /**
+     * Start of the current search.
+     */
+    private int searchStart = 0;
+    /**
+     * Position of the next token for the recognizer, or -1 if the current
+     * search is not started.
+     */
+    private int readPos = -1;
+    /**
+     * True when no match is possible any more.
+     */
+    private boolean finished = false;
+    private boolean closed = false;
+
+    private final TokenInput<T> input = new TokenInput<T>() {
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public T get(int pos) {
+            return window.get(pos - windowStart);
+        }
+
+        @Override
+        public LazyDFA.Transition<T> next(LazyDFA<T> dfa, LazyDFA.State<T> state, int pos) {
+            return dfa.next(state, window.get(pos - windowStart));
+        }
+    };
+
+    /**
+     * Creates a matcher for the language of an extractor.
+     *
+     * @param extractor the extractor (possibly determinized).
+     * @param listener receives the matches.
+     */
+    public StreamingMatcher(RegularExtractor<T> extractor, Consumer<? super MatchResult> listener) {
+        if (listener == null) {
+            throw new NullPointerException("listener should not be null");
+        }
+        this.recognizer = extractor.newSearchRecognizer();
+        this.recognizer.setEarlyStop(true);
+        this.postContextSize = extractor.getPostContextSize();
+        this.listener = listener;
+        run();
+    }
+
+    /**
+     * Reads the next token of the stream.
+     *
+     * @param token
+     * @throws IllegalStateException if the matcher is closed.
+     */
+    public void push(T token) {
+        if (closed) {
+            throw new IllegalStateException("matcher closed");
+        }
+        if (finished) {
+            // No match is possible any more.
+            size++;
+            return;
+        }
+        window.add(token);
+        size++;
+        run();
+    }
+
+    /**
+     * Reads a number of tokens.
+     *
+     * @param tokens
+     */
+    public void pushAll(Iterable<? extends T> tokens) {
+        for (T token : tokens) {
+            push(token);
+        }
+    }
+
+    /**
+     * Signals the end of the stream, and releases the tokens kept.
+     * <p>
+     * As matches are reported as soon as they are found, there are no
+     * pending matches.</p>
+     */
+    public void close() {
+        closed = true;
+        finished = true;
+        window.clear();
+    }
+
+    /**
+     * The number of tokens pushed so far.
+     *
+     * @return
+     */
+    public int getPosition() {
+        return size;
+    }
+
+    /**
+     * The number of tokens currently kept by the matcher.
+     *
+     * @return
+     */
+    public int getWindowSize() {
+        return window.size();
+    }
+
+    /**
+     * Advances the search as far as possible with the tokens available.
+     */
+    private void run() {
+        while (!finished) {
+            if (readPos == -1) {
+                if (searchStart > size) {
+                    // Wait for the token after an empty match.
+                    break;
+                }
+                recognizer.start(searchStart);
+                readPos = searchStart;
+            } else if (readPos < size) {
+                recognizer.read(input, readPos);
+                readPos++;
+            } else {
+                break;
+            }
+            if (recognizer.isTerminal()) {
+                report();
+            } else if (recognizer.isDead()) {
+                // As in search(), the recognizer starts with skip() : no
+                // later match is possible.
+                finished = true;
+                window.clear();
+            }
+        }
+        if (!finished) {
+            if (readPos == -1) {
+                trim(Math.min(searchStart, size));
+            } else if (postContextSize == 0) {
+                // The next search will start at the end of the match, which
+                // is the position of the token read last.
+                trim(readPos);
+            } else {
+                trim(recognizer.getEarliestMarker());
+            }
+        }
+    }
+
+    private void report() {
+        List<Integer> positions = recognizer.getMarkers();
+        MatchResult matchResult = new MatchResult(positions.subList(0, positions.size() - postContextSize));
+        int next = matchResult.getLastPosition();
+        // Failsafe system for empty match.
+        if (next == searchStart) {
+            next += 1;
+        }
+        searchStart = next;
+        readPos = -1;
+        listener.accept(matchResult);
+    }
+
+    /**
+     * Forgets the tokens before a position. The window is only shifted when
+     * half of it can be freed, to keep the cost of a push constant.
+     */
+    private void trim(int pos) {
+        int n = pos - windowStart;
+        if (n > 0 && 2 * n >= window.size()) {
+            window.subList(0, n).clear();
+            windowStart = pos;
+        }
+    }
+}
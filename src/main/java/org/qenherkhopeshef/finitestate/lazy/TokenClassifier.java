@@ -0,0 +1,33 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+/**
+ * Maps tokens to equivalence classes, numbered by small non-negative integers.
+ * <p>
+ * Two tokens in the same class must be accepted by exactly the same labels of
+ * the searched languages. A determinized search can then compute each
+ * transition once per class, using the first token met as representative, and
+ * cache it under the class number. When tokens are rich objects, almost all
+ * distinct, this is much more efficient than caching transitions per
+ * token.</p>
+ * <p>
+ * For instance, if all labels only look at the part of speech of a word, the
+ * classifier can return the ordinal of the part of speech.</p>
+ * <p>
+ * The class numbers are used as array indexes, so they should be small, and
+ * reasonably dense.</p>
+ *
+ * @author rosmord
+ * @param <T> the token type.
+ * @see RegularExtractor.Builder#classifier(TokenClassifier)
+ */
+@FunctionalInterface
+public interface TokenClassifier<T> {
+
+    /**
+     * Returns the class of a token.
+     *
+     * @param token
+     * @return a non-negative class number.
+     */
+    int classify(T token);
+}
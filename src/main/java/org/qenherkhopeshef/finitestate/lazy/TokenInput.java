@@ -0,0 +1,153 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.List;
+
+/**
+ * The text read by a {@link ReportingLanguageRecognizer}.
+ * <p>
+ * The recognizer doesn't need the tokens themselves, only the transitions they
+ * lead to. Hence, inputs made of primitive values (chars, ints) can find the
+ * transition from the token class, and only box the token when the
+ * transition is not in the cache.</p>
+ *
+ * @author rosmord
+ * @param <T> the token type.
+ */
+interface TokenInput<T> {
+
+    /**
+     * The number of tokens.
+     *
+     * @return
+     */
+    int size();
+
+    /**
+     * The token at a given position.
+     * <p>
+     * Only used to look for literal tokens.</p>
+     *
+     * @param pos
+     * @return
+     */
+    T get(int pos);
+
+    /**
+     * Does this input give its tokens as primitive codes ?
+     * <p>
+     * Inputs of chars and ints do : {@link #code(int)} then reads a token
+     * without boxing it, which is what literal searches use.</p>
+     *
+     * @return
+     * @see #codeOf(Object)
+     */
+    default boolean hasCodes() {
+        return false;
+    }
+
+    /**
+     * The code of the token at a given position : the char or the int itself.
+     *
+     * @param pos
+     * @return
+     * @throws UnsupportedOperationException if the input has no codes.
+     */
+    default int code(int pos) {
+        throw new UnsupportedOperationException("no codes for this input");
+    }
+
+    /**
+     * Follows the transition for the token at a given position.
+     *
+     * @param dfa the automaton.
+     * @param state the current state.
+     * @param pos the position of the token.
+     * @return the transition.
+     */
+    LazyDFA.Transition<T> next(LazyDFA<T> dfa, LazyDFA.State<T> state, int pos);
+
+    /**
+     * The part of this input between two positions ; its positions are
+     * relative to from.
+     *
+     * @param from the first position (included).
+     * @param to the last position (excluded).
+     * @return
+     */
+    default TokenInput<T> subInput(int from, int to) {
+        TokenInput<T> outer = this;
+        return new TokenInput<T>() {
+            @Override
+            public int size() {
+                return to - from;
+            }
+
+            @Override
+            public T get(int pos) {
+                return outer.get(pos + from);
+            }
+
+            @Override
+            public boolean hasCodes() {
+                return outer.hasCodes();
+            }
+
+            @Override
+            public int code(int pos) {
+                return outer.code(pos + from);
+            }
+
+            @Override
+            public LazyDFA.Transition<T> next(LazyDFA<T> dfa, LazyDFA.State<T> state, int pos) {
+                return outer.next(dfa, state, pos + from);
+            }
+        };
+    }
+
+    /**
+     * Can a token be compared with the codes of an input ? This is the case
+     * for chars and ints.
+     *
+     * @param token
+     * @return
+     */
+    static boolean hasCode(Object token) {
+        return token instanceof Character || token instanceof Integer;
+    }
+
+    /**
+     * The code of a token, as given by {@link #code(int)}.
+     *
+     * @param token a char or an int.
+     * @return
+     */
+    static int codeOf(Object token) {
+        return token instanceof Character ? (Character) token : (Integer) token;
+    }
+
+    /**
+     * An input for a list of tokens.
+     *
+     * @param <T>
+     * @param tokens
+     * @return
+     */
+    static <T> TokenInput<T> of(List<T> tokens) {
+        return new TokenInput<T>() {
+            @Override
+            public int size() {
+                return tokens.size();
+            }
+
+            @Override
+            public T get(int pos) {
+                return tokens.get(pos);
+            }
+
+            @Override
+            public LazyDFA.Transition<T> next(LazyDFA<T> dfa, LazyDFA.State<T> state, int pos) {
+                return dfa.next(state, tokens.get(pos));
+            }
+        };
+    }
+}
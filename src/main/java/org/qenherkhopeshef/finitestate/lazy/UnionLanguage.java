@@ -12,17 +12,31 @@ import java.util.Set;
  */
 class UnionLanguage<T> extends CompositeLanguage<T> {
 
+	private final StateTable<MultiStateIF<T>, UnionState> table = new StateTable<>();
+
 	public UnionLanguage(List<RegularLanguageIF<T>> children) {
 		super(children);
 	}
 
+	/**
+	 * Returns the canonical state for a child state.
+	 */
+	private UnionState state(MultiStateIF<T> childState) {
+		UnionState result = table.get(childState);
+		if (result == null) {
+			result = table.intern(childState, new UnionState(childState, childState.isTerminal()));
+		}
+		return result;
+	}
+
         @Override
 	public Set<? extends MultiStateIF<T>> getInitialStates() {
 		Set<MultiStateIF<T>> result= new HashSet<>();
 		for (RegularLanguageIF<T> subLang: getChildren()) {
 			Set<? extends MultiStateIF<T>> childStates = subLang.getInitialStates();
 			for (MultiStateIF<T> childState: childStates) {
-				result.add(new UnionState(childState, childState.isTerminal()));
+				if (!childState.isDead())
+					result.add(state(childState));
 			}
 		}
 		return result;
@@ -45,11 +59,22 @@ class UnionLanguage<T> extends CompositeLanguage<T> {
 			super(childState, terminal);			
 		}
 
+                @Override
+		public boolean isDead() {
+			return childState.isDead();
+		}
+
+		@Override
+		public boolean isUniversal() {
+			return childState.isUniversal();
+		}
+
                 @Override
 		public Set<UnionState> accept(T token) {
 			Set<UnionLanguage<T>.UnionState> result= new HashSet<>();
 			for (MultiStateIF<T> nextChildState: childState.accept(token)) {
-				result.add(new UnionState(nextChildState, nextChildState.isTerminal()));
+				if (!nextChildState.isDead())
+					result.add(state(nextChildState));
 			}
 			return result;
 		}
@@ -139,6 +139,8 @@ public class SpeedTest {
     public void run() {
         timeSearch("a.*b", a_star_b_recognizer);
         timeSearch("a.*b moins .*cd.*", a_star_b_minus_cd_recognizer);
+        timeSearch("a.*b moins .*cd.* (determinized)",
+                RegularExtractor.getBuilder(a_star_b_minus_cd).determinize().build());
         
         int maxLengths[] = {4, 20};
         for (int m: maxLengths) {
@@ -0,0 +1,93 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.qenherkhopeshef.finitestate.lazy.RegularLanguageFactory.*;
+
+/**
+ * Checks that a limited transition cache stays within its budget, and gives
+ * the same results as an unlimited one.
+ *
+ * @author rosmord
+ */
+public class CacheBudgetTest {
+
+    private static final RegularLanguageIF<Character> A_STAR_B_MINUS_CD = inter(
+            seq(exact('a'), skip(), exact('b')),
+            complement(seq(skip(), exact('c'), exact('d'), skip())));
+
+    private static final String TEXT = "xxaxxcdxxbxxaxxbxacxdbxxxabaaxbbcdab";
+
+    @Test
+    public void testLRUStaysInBudget() {
+        LazyDFA<Character> dfa = new LazyDFA<>(A_STAR_B_MINUS_CD,
+                new CacheBudget(3, Long.MAX_VALUE, CacheBudget.EvictionPolicy.LRU),
+                new CacheStatistics());
+        for (int i = 0; i < TEXT.length(); i++) {
+            List<Character> l = CharHelper.fromString(TEXT.substring(i));
+            assertEquals(A_STAR_B_MINUS_CD.recognize(l), dfa.recognize(l));
+            assertTrue(dfa.size() <= 3);
+        }
+        assertTrue(dfa.getStatistics().getEvictions() > 0);
+    }
+
+    @Test
+    public void testFlushStaysInBudget() {
+        LazyDFA<Character> dfa = new LazyDFA<>(A_STAR_B_MINUS_CD,
+                new CacheBudget(Integer.MAX_VALUE, 1000, CacheBudget.EvictionPolicy.FLUSH),
+                new CacheStatistics());
+        for (int i = 0; i < TEXT.length(); i++) {
+            List<Character> l = CharHelper.fromString(TEXT.substring(i));
+            assertEquals(A_STAR_B_MINUS_CD.recognize(l), dfa.recognize(l));
+            // The two states in use may exceed the budget.
+            assertTrue(dfa.size() <= 2 || dfa.getApproximateBytes() <= 1000);
+        }
+        assertTrue(dfa.getStatistics().getEvictions() > 0);
+    }
+
+    @Test
+    public void testStatistics() {
+        LazyDFA<Character> dfa = new LazyDFA<>(seq(exact('a'), skip(), exact('b')),
+                CacheBudget.UNLIMITED, new CacheStatistics());
+        dfa.recognize(CharHelper.fromString("axxb"));
+        long misses = dfa.getStatistics().getMisses();
+        assertEquals(0, dfa.getStatistics().getHits());
+        dfa.recognize(CharHelper.fromString("axxb"));
+        assertEquals(misses, dfa.getStatistics().getMisses());
+        assertEquals(4, dfa.getStatistics().getHits());
+        assertEquals(0, dfa.getStatistics().getEvictions());
+    }
+
+    @Test
+    public void testLargeClassNumbers() {
+        // Class numbers in the millions must not be stored in arrays.
+        LazyDFA<Character> dfa = new LazyDFA<>(A_STAR_B_MINUS_CD, CacheBudget.UNLIMITED,
+                new CacheStatistics(), c -> c * 100000);
+        for (int i = 0; i < TEXT.length(); i++) {
+            List<Character> l = CharHelper.fromString(TEXT.substring(i));
+            assertEquals(A_STAR_B_MINUS_CD.recognize(l), dfa.recognize(l));
+        }
+        assertTrue(dfa.getApproximateBytes() < 100000);
+    }
+
+    @Test
+    public void testSmallBudgetSearch() {
+        RegularExtractor<Character> plain = RegularExtractor.getBuilder(A_STAR_B_MINUS_CD).build();
+        for (CacheBudget.EvictionPolicy policy : CacheBudget.EvictionPolicy.values()) {
+            RegularExtractor<Character> limited = RegularExtractor.getBuilder(A_STAR_B_MINUS_CD)
+                    .cacheBudget(new CacheBudget(2, Long.MAX_VALUE, policy))
+                    .build();
+            assertEquals(plain.search(CharHelper.fromString(TEXT)), limited.search(CharHelper.fromString(TEXT)));
+            assertEquals(plain.search(CharHelper.fromString(TEXT), 5), limited.search(CharHelper.fromString(TEXT), 5));
+            assertTrue(limited.getCacheStatistics().getEvictions() > 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyBudget() {
+        new CacheBudget(0, 100, CacheBudget.EvictionPolicy.LRU);
+    }
+}
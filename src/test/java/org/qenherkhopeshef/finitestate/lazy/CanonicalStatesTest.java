@@ -0,0 +1,99 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.qenherkhopeshef.finitestate.lazy.RegularLanguageFactory.*;
+
+/**
+ * Checks that equal states are, in most cases, the same object.
+ *
+ * @author rosmord
+ */
+public class CanonicalStatesTest {
+
+    private static final RegularLanguageIF<Character> LANGUAGE = seq(
+            exact('a'),
+            star(union(exact('b'), exact('c'))),
+            inter(seq(skip(), exact('d')), complement(seq(skip(), exact('e'), skip()))));
+
+    @Test
+    public void testSameInstances() {
+        String text = "abcbcxd";
+        Set<? extends MultiStateIF<Character>> first = LANGUAGE.getInitialStates();
+        Set<? extends MultiStateIF<Character>> second = LANGUAGE.getInitialStates();
+        for (char c : text.toCharArray()) {
+            assertSameInstances(first, second);
+            first = step(first, c);
+            second = step(second, c);
+        }
+        assertSameInstances(first, second);
+    }
+
+    @Test
+    public void testLabelStatesAreShared() {
+        RegularLanguageIF<Character> a = exact('a');
+        MultiStateIF<Character> start = a.getInitialStates().iterator().next();
+        assertSame(start.accept('a'), start.accept('a'));
+        assertSame(start.accept('b'), start.accept('c'));
+        assertNotSame(start.accept('a'), start.accept('b'));
+    }
+
+    @Test
+    public void testInitialStatesAreCached() {
+        RegularLanguageIF<Character> s = seq(opt(exact('a')), opt(exact('b')), exact('c'));
+        assertSame(s.getInitialStates(), s.getInitialStates());
+        assertEquals(5, s.getInitialStates().size());
+        RegularLanguageIF<Character> star = star(seq(exact('a'), exact('b')));
+        assertSame(star.getInitialStates(), star.getInitialStates());
+        // The restart after a repetition reuses the initial states.
+        Set<MultiStateIF<Character>> afterAB = step(step(star.getInitialStates(), 'a'), 'b');
+        assertTrue(afterAB.containsAll(star.getInitialStates()));
+    }
+
+    @Test
+    public void testUnusedStatesAreReleased() throws InterruptedException {
+        ComplementLanguage<Character> l = (ComplementLanguage<Character>) complement(seq(skip(), exact('a'), exactLength(12)));
+        Random random = new Random(3);
+        List<Character> text = new ArrayList<>();
+        for (int i = 0; i < 200_000; i++) {
+            text.add(random.nextBoolean() ? 'a' : 'b');
+        }
+        LazyDFA<Character> dfa = new LazyDFA<>(l, new CacheBudget(16, 1 << 20, CacheBudget.EvictionPolicy.LRU), new CacheStatistics());
+        dfa.recognize(text);
+        assertTrue(l.getNumberOfStates() > 16);
+        // Only the states of the automaton are still used.
+        for (int i = 0; i < 20 && l.getNumberOfStates() > 16; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertTrue(l.getNumberOfStates() + " states kept", l.getNumberOfStates() <= 16);
+        assertEquals(l.recognize(text), dfa.recognize(text));
+    }
+
+    private static Set<MultiStateIF<Character>> step(Set<? extends MultiStateIF<Character>> states, char c) {
+        Set<MultiStateIF<Character>> result = new HashSet<>();
+        for (MultiStateIF<Character> s : states) {
+            result.addAll(s.accept(c));
+        }
+        return result;
+    }
+
+    private static void assertSameInstances(Set<? extends MultiStateIF<Character>> s1, Set<? extends MultiStateIF<Character>> s2) {
+        assertEquals(s1, s2);
+        IdentityHashMap<MultiStateIF<Character>, Boolean> identities = new IdentityHashMap<>();
+        for (MultiStateIF<Character> s : s1) {
+            identities.put(s, true);
+        }
+        for (MultiStateIF<Character> s : s2) {
+            assertTrue(s + " is not canonical", identities.containsKey(s));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.qenherkhopeshef.finitestate.lazy.RegularLanguageFactory.*;
+
+/**
+ * Checks the detection of dead and universal states.
+ *
+ * @author rosmord
+ */
+public class DeadStatesTest {
+
+    @Test
+    public void testSkipIsUniversal() {
+        for (MultiStateIF<Character> s : RegularLanguageFactory.<Character>skip().getInitialStates()) {
+            assertTrue(s.isUniversal());
+        }
+        for (MultiStateIF<Character> s : seq(exact('a'), skip()).getInitialStates()) {
+            assertFalse(s.isUniversal());
+        }
+    }
+
+    @Test
+    public void testComplementDies() {
+        RegularLanguageIF<Character> noCd = complement(seq(skip(), exact('c'), exact('d'), skip()));
+        assertFalse(run(noCd, "xxc").isEmpty());
+        assertTrue(run(noCd, "xxcd").isEmpty());
+        assertFalse(noCd.recognize(CharHelper.fromString("xxcdxxxxxxxxxxxxxx")));
+        assertTrue(noCd.recognize(CharHelper.fromString("xxcxxxxxxxxxxxxxxd")));
+    }
+
+    @Test
+    public void testComplementOfDeadIsUniversal() {
+        RegularLanguageIF<Character> notA = complement(exact('a'));
+        Set<MultiStateIF<Character>> states = run(notA, "ab");
+        assertEquals(1, states.size());
+        assertTrue(states.iterator().next().isUniversal());
+    }
+
+    @Test
+    public void testInterWithComplementDies() {
+        RegularLanguageIF<Character> l = inter(
+                seq(exact('a'), skip(), exact('b')),
+                complement(seq(skip(), exact('c'), exact('d'), skip())));
+        assertFalse(run(l, "axc").isEmpty());
+        assertTrue(run(l, "axcd").isEmpty());
+        assertTrue(l.recognize(CharHelper.fromString("axcxdb")));
+        assertFalse(l.recognize(CharHelper.fromString("axcdb")));
+    }
+
+    @Test
+    public void testLabelHasNoBadState() {
+        assertTrue(run(exact('a'), "b").isEmpty());
+        assertTrue(run(exact('a'), "aa").isEmpty());
+        assertTrue(run(emptySequence(), "a").isEmpty());
+    }
+
+    private static Set<MultiStateIF<Character>> run(RegularLanguageIF<Character> l, String s) {
+        Set<MultiStateIF<Character>> current = new HashSet<>(l.getInitialStates());
+        for (char c : s.toCharArray()) {
+            Set<MultiStateIF<Character>> next = new HashSet<>();
+            for (MultiStateIF<Character> state : current) {
+                for (MultiStateIF<Character> n : state.accept(c)) {
+                    if (!n.isDead()) {
+                        next.add(n);
+                    }
+                }
+            }
+            current = next;
+        }
+        return current;
+    }
+}
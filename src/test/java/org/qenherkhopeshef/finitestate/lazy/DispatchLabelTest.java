@@ -0,0 +1,83 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.qenherkhopeshef.finitestate.lazy.RegularLanguageFactory.*;
+
+/**
+ * Checks the merging of the labels of a union.
+ *
+ * @author rosmord
+ */
+public class DispatchLabelTest {
+
+    @Test
+    public void testLabelsAreMerged() {
+        RegularLanguageIF<Character> l = union(exact('a'), exact('b'), inSet(new HashSet<>(Arrays.asList('c', 'd'))), range('x', 'z'));
+        assertTrue(l instanceof LabelLanguage);
+        DispatchLabel<Character> label = (DispatchLabel<Character>) ((LabelLanguage<Character>) l).getLabel();
+        assertEquals(new HashSet<>(Arrays.asList('a', 'b')), label.getTokens());
+        assertEquals(1, label.getSets().size());
+        assertEquals(1, label.getFallback().size());
+        for (char c : "abcdxyz".toCharArray()) {
+            assertTrue(label.matches(c));
+        }
+        assertFalse(label.matches('e'));
+        // Other languages are kept.
+        RegularLanguageIF<Character> u = union(exact('a'), exactSequence('b', 'c'), exact('d'));
+        assertTrue(u instanceof UnionLanguage);
+        assertEquals(2, ((UnionLanguage<Character>) u).getChildren().size());
+        assertTrue(u.recognize(CharHelper.fromString("d")));
+        assertTrue(u.recognize(CharHelper.fromString("bc")));
+        assertFalse(u.recognize(CharHelper.fromString("b")));
+    }
+
+    @Test
+    public void testSetsAreNotCopied() {
+        TreeSet<String> ci = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        ci.add("hello");
+        RegularLanguageIF<String> l = union(inSet(ci), exact("x"));
+        assertTrue(l.recognize(Arrays.asList("HELLO")));
+        assertTrue(l.recognize(Arrays.asList("x")));
+        assertFalse(l.recognize(Arrays.asList("hi")));
+        // The set may change after the language is built.
+        HashSet<String> set = new HashSet<>(Arrays.asList("a"));
+        RegularLanguageIF<String> m = union(inSet(set), exact("x"));
+        set.add("b");
+        assertTrue(m.recognize(Arrays.asList("b")));
+        assertTrue(m.recognize(Arrays.asList("a")));
+    }
+
+    @Test
+    public void testSameMatches() {
+        Random random = new Random(2);
+        List<RegularLanguageIF<Character>> branches = new ArrayList<>();
+        for (char c = 'a'; c <= 'p'; c++) {
+            branches.add(exact(c));
+        }
+        branches.add(range('0', '3'));
+        branches.add(seq(exact('x'), exact('y')));
+        List<RegularLanguageIF<Character>> parts = Arrays.asList(plus(union(branches)), exact(' '));
+        List<RegularLanguageIF<Character>> unmerged = Arrays.asList(plus(new UnionLanguage<>(branches)), exact(' '));
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            b.append("abcdmnopqrxyz0123456789  ".charAt(random.nextInt(25)));
+        }
+        List<Character> text = CharHelper.fromString(b.toString());
+        List<MatchResult> expected = new RegularExtractor<>(unmerged).search(text);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, new RegularExtractor<>(parts).search(text));
+        RegularExtractor.Builder<Character> builder = RegularExtractor.getBuilder();
+        parts.forEach(builder::part);
+        assertEquals(expected, builder.minterms().build().search(text));
+        assertEquals(expected, new CharRegularExtractor(new RegularExtractor<>(parts)).search(b.toString()));
+    }
+}
@@ -0,0 +1,121 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.qenherkhopeshef.finitestate.lazy.RegularLanguageFactory.*;
+
+/**
+ * Tests for {@link RegularExtractor.Matcher}.
+ *
+ * @author rosmord
+ */
+public class ExtractorMatcherTest {
+
+    private static final List<String> TEXTS = Arrays.asList(
+            "ab12 aab x3", "", "b", "aaab1 ab22 b3333", "no match here");
+
+    private static List<MatchResult> findAll(RegularExtractor.Matcher<Character> matcher) {
+        List<MatchResult> result = new ArrayList<>();
+        while (matcher.find()) {
+            result.add(matcher.getMatch());
+        }
+        return result;
+    }
+
+    private static List<RegularExtractor<Character>> extractors() {
+        return Arrays.asList(
+                new RegularExtractor<>(star(exact('a')), exact('b'), plus(range('0', '9'))),
+                RegularExtractor.getBuilder(star(exact('a'))).part(exact('b')).part(plus(range('0', '9'))).determinize().build(),
+                RegularExtractor.getBuilder(star(exact('a'))).part(exact('b')).part(plus(range('0', '9'))).twoPhase().build(),
+                new RegularExtractor<>(exactSequence('a', 'b'), union(exact('1'), exact('2'))),
+                new RegularExtractor<>(opt(exact('a'))));
+    }
+
+    @Test
+    public void testSameAsSearch() {
+        for (RegularExtractor<Character> extractor : extractors()) {
+            RegularExtractor.Matcher<Character> matcher = extractor.matcher(new ArrayList<>());
+            for (String s : TEXTS) {
+                List<Character> text = CharHelper.fromString(s);
+                assertEquals(s, extractor.search(text), findAll(matcher.reset(text)));
+                assertEquals(s, extractor.search(text, 3), findAll(extractor.matcher(text, 3)));
+            }
+            // After a reset, the same matches are found again.
+            List<Character> text = CharHelper.fromString(TEXTS.get(0));
+            matcher.reset(text);
+            List<MatchResult> first = findAll(matcher);
+            assertFalse(first.isEmpty());
+            assertEquals(first, findAll(matcher.reset()));
+        }
+    }
+
+    @Test
+    public void testNoMatch() {
+        RegularExtractor.Matcher<Character> matcher = new RegularExtractor<>(exact('a'), star(exact('b'))).matcher(CharHelper.fromString("bab"));
+        assertTrue(matcher.find());
+        assertEquals(new MatchResult(1, 2, 2), matcher.getMatch());
+        assertFalse(matcher.find());
+        assertFalse(matcher.find());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoMatchAvailable() {
+        RegularExtractor.Matcher<Character> matcher = new RegularExtractor<>(exact('a')).matcher(CharHelper.fromString("bb"));
+        assertFalse(matcher.find());
+        matcher.getMatch();
+    }
+
+    @Test
+    public void testOtherThread() throws InterruptedException, ExecutionException {
+        RegularExtractor<Character> extractor = extractors().get(1);
+        List<Character> text = CharHelper.fromString(TEXTS.get(3));
+        RegularExtractor.Matcher<Character> matcher = extractor.matcher(text);
+        List<MatchResult> expected = findAll(matcher);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<MatchResult>> other = executor.submit(() -> findAll(matcher.reset()));
+            assertEquals(expected, other.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testInterleavedUsers() {
+        CacheBudget tiny = new CacheBudget(2, Long.MAX_VALUE, CacheBudget.EvictionPolicy.LRU);
+        List<RegularExtractor<Character>> extractors = Arrays.asList(
+                RegularExtractor.getBuilder(star(exact('a'))).part(exact('b')).part(plus(range('0', '9'))).cacheBudget(tiny).build(),
+                RegularExtractor.getBuilder(star(exact('a'))).part(exact('b')).part(plus(range('0', '9'))).cacheBudget(tiny).twoPhase().build());
+        List<Character> text = CharHelper.fromString("aab12 ab3 xb45 aaab6 b7");
+        List<Character> other = CharHelper.fromString("b1 aab22 ab3");
+        for (RegularExtractor<Character> extractor : extractors) {
+            List<MatchResult> expected = extractor.search(text);
+            List<MatchResult> expectedOther = extractor.search(other);
+            assertEquals(5, expected.size());
+            // The searches and the other matcher evict the states of the shared caches.
+            RegularExtractor.Matcher<Character> m1 = extractor.matcher(text);
+            RegularExtractor.Matcher<Character> m2 = extractor.matcher(other);
+            List<MatchResult> found = new ArrayList<>();
+            List<MatchResult> foundOther = new ArrayList<>();
+            while (m1.find()) {
+                found.add(m1.getMatch());
+                assertEquals(expectedOther, extractor.search(other));
+                if (m2.find()) {
+                    foundOther.add(m2.getMatch());
+                }
+            }
+            foundOther.addAll(findAll(m2));
+            assertEquals(expected, found);
+            assertEquals(expectedOther, foundOther);
+        }
+    }
+}
@@ -4,7 +4,11 @@ import static org.junit.Assert.*;
 
 import org.junit.Test;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+
+import static org.qenherkhopeshef.finitestate.lazy.RegularLanguageFactory.*;
 
 public class IntersectionLanguageTest {
     
@@ -21,5 +25,36 @@ public class IntersectionLanguageTest {
         assertEquals(1, res.size());
         assertEquals(new MatchResult(0,3), res.get(0).getAsOneMatch());
     }
-    
+
+    @Test
+    public void testOneStatePerStep() {
+        // Two very non-deterministic children.
+        RegularLanguageIF<Character> l = inter(
+                seq(skip(), exact('a'), skip(), exact('a'), skip()),
+                seq(skip(), exact('b'), skip(), exact('b'), skip()));
+        Set<? extends MultiStateIF<Character>> current = l.getInitialStates();
+        for (char c : "xaybzaxbyabab".toCharArray()) {
+            assertEquals(1, current.size());
+            Set<MultiStateIF<Character>> next = new HashSet<>();
+            for (MultiStateIF<Character> s : current) {
+                next.addAll(s.accept(c));
+            }
+            current = next;
+        }
+        assertTrue(current.iterator().next().isTerminal());
+        assertTrue(l.recognize(CharHelper.fromString("abba")));
+        assertFalse(l.recognize(CharHelper.fromString("abca")));
+    }
+
+    @Test
+    public void testDeadChild() {
+        RegularLanguageIF<Character> l = inter(emptySequence(), skip());
+        MultiStateIF<Character> start = l.getInitialStates().iterator().next();
+        assertTrue(start.isTerminal());
+        assertTrue(start.accept('b').isEmpty());
+        RegularLanguageIF<Character> l2 = inter(seq(exact('a'), skip()), skip());
+        assertTrue(l2.getInitialStates().iterator().next().accept('b').isEmpty());
+        assertTrue(inter(emptyLanguage(), skip()).getInitialStates().isEmpty());
+    }
+
 }
@@ -0,0 +1,61 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.qenherkhopeshef.finitestate.lazy.RegularLanguageFactory.*;
+
+/**
+ * Checks that a label shared by several states is evaluated once per token.
+ *
+ * @author rosmord
+ */
+public class LabelMemoTest {
+
+    /**
+     * A vowel label, which counts its evaluations.
+     */
+    private static class CountingLabel implements LazyLabelIF<Character> {
+
+        private int count;
+
+        @Override
+        public boolean matches(Character token) {
+            count++;
+            return "aeiou".indexOf(token) >= 0;
+        }
+    }
+
+    @Test
+    public void testOneEvaluationPerToken() {
+        CountingLabel vowel = new CountingLabel();
+        // The label appears in several branches, and in several parts.
+        RegularLanguageIF<Character> l = seq(
+                union(seq(label(vowel), exact('x')), seq(label(vowel), label(vowel)), seq(exact('y'), label(vowel))),
+                star(label(vowel)));
+        RegularLanguageIF<Character> v = inSet(new HashSet<>(CharHelper.fromString("aeiou")));
+        RegularLanguageIF<Character> reference = seq(
+                union(seq(v, exact('x')), seq(v, v), seq(exact('y'), v)),
+                star(v));
+        List<Character> text = CharHelper.fromString("ya yaax xxxaeiouxyo");
+        List<MatchResult> result = new RegularExtractor<>(l).search(text);
+        assertEquals(new RegularExtractor<>(reference).search(text), result);
+        assertEquals(7, result.size());
+        assertTrue(vowel.count <= text.size());
+        vowel.count = 0;
+        assertTrue(l.recognize(CharHelper.fromString("aaeio")));
+        assertTrue(vowel.count <= 5);
+    }
+
+    @Test
+    public void testOutsideOfStep() {
+        CountingLabel vowel = new CountingLabel();
+        MultiStateIF<Character> start = label(vowel).getInitialStates().iterator().next();
+        start.accept('a');
+        start.accept('a');
+        assertEquals(2, vowel.count);
+    }
+}
@@ -0,0 +1,96 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.qenherkhopeshef.finitestate.lazy.RegularLanguageFactory.*;
+
+/**
+ * Structural equality of languages, and sharing of equal sub-languages.
+ *
+ * @author rosmord
+ */
+public class LanguageEqualityTest {
+
+    @Test
+    public void testStructuralEquality() {
+        assertEquals(exact('a'), exact('a'));
+        assertNotEquals(exact('a'), exact('b'));
+        assertEquals(skip(), skip());
+        assertEquals(seq(skip(), exact('a'), plus(range('0', '9'))), seq(skip(), exact('a'), plus(range('0', '9'))));
+        assertEquals(seq(skip(), exact('a')).hashCode(), seq(skip(), exact('a')).hashCode());
+        assertNotEquals(seq(exact('a'), exact('b')), union(exact('a'), exact('b')));
+        assertNotEquals(seq(exact('a'), exact('b')), seq(exact('b'), exact('a')));
+        // Sets may change : set labels are equal if they use the same set.
+        Set<Character> ab = new HashSet<>(Arrays.asList('a', 'b'));
+        assertEquals(inSet(ab), inSet(ab));
+        assertNotEquals(inSet(ab), inSet(new HashSet<>(Arrays.asList('b', 'a'))));
+        assertEquals(notInSet(ab), notInSet(ab));
+        assertEquals(repeat(exact('a'), 2, 3), repeat(exact('a'), 2, 3));
+        assertNotEquals(repeat(exact('a'), 2, 3), repeat(exact('a'), 2, 4));
+        assertEquals(complement(exact('a')), complement(exact('a')));
+        assertEquals(emptySequence(), emptySequence());
+        assertNotEquals(emptySequence(), emptyLanguage());
+        assertEquals(exactSequence('a', 'b', 'c'), exactSequence('a', 'b', 'c'));
+        assertEquals(lexicon(Arrays.asList(CharHelper.fromString("ab"), CharHelper.fromString("cd"))),
+                lexicon(Arrays.asList(CharHelper.fromString("cd"), CharHelper.fromString("ab"))));
+        // Custom labels are compared by identity.
+        LazyLabelIF<Character> isDigit = Character::isDigit;
+        assertEquals(label(isDigit), label(isDigit));
+        assertNotEquals(label(isDigit), RegularLanguageFactory.<Character>label(Character::isDigit));
+    }
+
+    @Test
+    public void testModifiedSet() {
+        Set<Character> set = new HashSet<>(Arrays.asList('a'));
+        RegularLanguageIF<Character> l = seq(inSet(set), exact('b'));
+        Map<RegularLanguageIF<Character>, String> compiled = new HashMap<>();
+        compiled.put(l, "l");
+        MultiStateIF<Character> s = l.getInitialStates().iterator().next();
+        int stateHash = s.hashCode();
+        set.add('c');
+        assertEquals("l", compiled.get(l));
+        assertEquals(stateHash, s.hashCode());
+        assertEquals(s, seq(inSet(set), exact('b')).getInitialStates().iterator().next());
+        assertEquals(seq(inSet(set), exact('b')).hashCode(), l.hashCode());
+    }
+
+    @Test
+    public void testLanguagesAsKeys() {
+        Map<RegularLanguageIF<Character>, String> compiled = new HashMap<>();
+        compiled.put(seq(exact('a'), skip(), exact('b')), "ab");
+        assertEquals("ab", compiled.get(seq(exact('a'), skip(), exact('b'))));
+        assertNull(compiled.get(seq(exact('a'), skip(), exact('c'))));
+    }
+
+    @Test
+    public void testEqualLanguagesHaveEqualStates() {
+        RegularLanguageIF<Character> l1 = seq(exact('a'), skip());
+        RegularLanguageIF<Character> l2 = seq(exact('a'), skip());
+        assertEquals(l1.getInitialStates(), l2.getInitialStates());
+        MultiStateIF<Character> s1 = l1.getInitialStates().iterator().next();
+        MultiStateIF<Character> s2 = l2.getInitialStates().iterator().next();
+        assertEquals(s1.accept('a'), s2.accept('a'));
+        // The states of two equal children are merged in a union.
+        assertEquals(l1.getInitialStates().size(), union(l1, l2).getInitialStates().size());
+    }
+
+    @Test
+    public void testOptimizerSharesEqualLanguages() {
+        RegularLanguageIF<Character> l = LanguageOptimizer.optimize(
+                seq(skip(), union(exact('x'), seq(range('0', '9'), exact('y'))), skip(), range('0', '9')));
+        List<RegularLanguageIF<Character>> children = ((SequenceLanguage<Character>) l).getChildren();
+        assertSame(children.get(0), children.get(2));
+        SequenceLanguage<Character> inner = (SequenceLanguage<Character>) ((UnionLanguage<Character>) children.get(1)).getChildren().get(1);
+        assertSame(inner.getChildren().get(0), children.get(3));
+        // Equal alternatives are removed.
+        assertTrue(LanguageOptimizer.optimize(union(seq(exact('a'), skip()), seq(exact('a'), skip()))) instanceof SequenceLanguage);
+    }
+}
@@ -0,0 +1,146 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.qenherkhopeshef.finitestate.lazy.RegularLanguageFactory.*;
+
+/**
+ * Tests for the optimizer : the languages are simpler, and recognize the same
+ * words.
+ *
+ * @author rosmord
+ */
+public class LanguageOptimizerTest {
+
+    @Test
+    public void testSimplifications() {
+        RegularLanguageIF<Character> a = exact('a');
+        assertTrue(LanguageOptimizer.optimize(plus(a)) instanceof RepeatLanguage);
+        assertTrue(LanguageOptimizer.optimize(star(star(a))) instanceof KleeneStarLanguage);
+        RegularLanguageIF<Character> starOpt = LanguageOptimizer.optimize(star(opt(seq(a, range('0', '9')))));
+        assertTrue(starOpt instanceof KleeneStarLanguage);
+        assertTrue(((KleeneStarLanguage<Character>) starOpt).getRepeatedLanguage() instanceof SequenceLanguage);
+        assertSame(a, LanguageOptimizer.optimize(complement(complement(a))));
+        assertSame(a, LanguageOptimizer.optimize(seq(emptySequence(), a, seq(emptySequence()))));
+        assertTrue(LanguageOptimizer.optimize(seq(a, emptyLanguage())) instanceof EmptyLanguage);
+        // Nested sequences are flattened, and the tokens merged in a lexicon.
+        RegularLanguageIF<Character> s = LanguageOptimizer.optimize(seq(seq(a, exact('b')), seq(exact('c'), star(a))));
+        assertTrue(s instanceof SequenceLanguage);
+        List<RegularLanguageIF<Character>> children = ((SequenceLanguage<Character>) s).getChildren();
+        assertEquals(2, children.size());
+        assertTrue(children.get(0) instanceof LexiconLanguage);
+        // opt(star(a)) doesn't need the empty sequence.
+        assertTrue(LanguageOptimizer.optimize(opt(star(a))) instanceof KleeneStarLanguage);
+        RegularLanguageIF<Character> u = LanguageOptimizer.optimize(union(union(a, seq(a, a)), opt(exact('b'))));
+        assertEquals(2, ((UnionLanguage<Character>) u).getChildren().size());
+        assertEquals(3, ((LexiconLanguage<Character>) ((UnionLanguage<Character>) u).getChildren().get(1)).getSize());
+    }
+
+    @Test
+    public void testFactorPrefixes() {
+        RegularLanguageIF<Character> l = union(
+                seq(exact('a'), exact('b'), any()),
+                seq(exact('a'), exact('b'), range('0', '9')),
+                seq(exact('a'), inSet(new HashSet<>(Arrays.asList('x', 'y')))));
+        RegularLanguageIF<Character> o = LanguageOptimizer.optimize(l);
+        assertTrue(o instanceof SequenceLanguage);
+        // The common prefix "ab" is read once.
+        assertEquals(4, states(l, "ab").size());
+        assertEquals(2, states(o, "ab").size());
+        for (String w : new String[]{"abc", "ab1", "ax", "ay", "ab", "a", "abcd", "axy"}) {
+            assertEquals(w, l.recognize(CharHelper.fromString(w)), o.recognize(CharHelper.fromString(w)));
+        }
+    }
+
+    @Test
+    public void testMergeLiterals() {
+        RegularLanguageIF<Character> o = LanguageOptimizer.optimize(union(
+                exactSequence('a', 'b', 'c'), exactSequence('a', 'b', 'd'), exact('e'), seq(any(), exact('f'))));
+        List<RegularLanguageIF<Character>> children = ((UnionLanguage<Character>) o).getChildren();
+        assertEquals(2, children.size());
+        assertEquals(3, ((LexiconLanguage<Character>) children.get(0)).getSize());
+    }
+
+    @Test
+    public void testSameWords() {
+        Random random = new Random(8);
+        for (int n = 0; n < 300; n++) {
+            RegularLanguageIF<Character> l = randomLanguage(random, 4);
+            RegularLanguageIF<Character> o = LanguageOptimizer.optimize(l);
+            for (int k = 0; k < 20; k++) {
+                String s = ReferenceSearch.randomText(random, "abc", 7);
+                List<Character> w = CharHelper.fromString(s);
+                assertEquals(l + " " + s, l.recognize(w), o.recognize(w));
+            }
+        }
+    }
+
+    @Test
+    public void testStarOfEmptyLanguage() {
+        List<Character> empty = CharHelper.fromString("");
+        assertTrue(RegularLanguageFactory.<Character>star(emptyLanguage()).recognize(empty));
+        assertTrue(LanguageOptimizer.optimize(RegularLanguageFactory.<Character>star(emptyLanguage())).recognize(empty));
+    }
+
+    @Test
+    public void testSameMatches() {
+        Random random = new Random(9);
+        for (int n = 0; n < 100; n++) {
+            List<RegularLanguageIF<Character>> parts = Arrays.asList(randomLanguage(random, 3), randomLanguage(random, 3));
+            String s = ReferenceSearch.randomText(random, "abc", 30);
+            List<Character> text = CharHelper.fromString(s);
+            // Reference : the recognizer on the parts, as they are.
+            List<MatchResult> expected = ReferenceSearch.restartSearch(parts, text);
+            assertEquals(parts + " " + s, expected, new RegularExtractor<>(parts).search(text));
+        }
+    }
+
+    private static Set<MultiStateIF<Character>> states(RegularLanguageIF<Character> l, String s) {
+        Set<MultiStateIF<Character>> current = new HashSet<>(l.getInitialStates());
+        for (char c : s.toCharArray()) {
+            Set<MultiStateIF<Character>> next = new HashSet<>();
+            for (MultiStateIF<Character> state : current) {
+                next.addAll(state.accept(c));
+            }
+            current = next;
+        }
+        return current;
+    }
+
+    private static RegularLanguageIF<Character> randomLanguage(Random random, int depth) {
+        int choice = depth == 0 ? random.nextInt(3) : random.nextInt(12);
+        switch (choice) {
+            case 0:
+                return exact("abc".charAt(random.nextInt(3)));
+            case 1:
+                return random.nextBoolean() ? emptySequence() : any();
+            case 2:
+                return random.nextInt(4) == 0 ? emptyLanguage() : exact('a');
+            case 3:
+                return seq(randomLanguage(random, depth - 1), randomLanguage(random, depth - 1));
+            case 4:
+                return seq(randomLanguage(random, depth - 1), randomLanguage(random, depth - 1), randomLanguage(random, depth - 1));
+            case 5:
+                return union(randomLanguage(random, depth - 1), randomLanguage(random, depth - 1));
+            case 6:
+                return star(randomLanguage(random, depth - 1));
+            case 7:
+                return plus(randomLanguage(random, depth - 1));
+            case 8:
+                return opt(randomLanguage(random, depth - 1));
+            case 9:
+                return complement(randomLanguage(random, depth - 1));
+            case 10:
+                return inter(randomLanguage(random, depth - 1), randomLanguage(random, depth - 1));
+            default:
+                return repeat(randomLanguage(random, depth - 1), random.nextInt(2), 1 + random.nextInt(3));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.qenherkhopeshef.finitestate.lazy.RegularLanguageFactory.*;
+
+/**
+ * Tests for the reverse of languages.
+ *
+ * @author rosmord
+ */
+public class LanguageReverserTest {
+
+    @Test
+    public void testReversedWords() {
+        List<RegularLanguageIF<Character>> languages = Arrays.asList(
+                seq(exact('a'), star(exact('b')), exact('c')),
+                union(seq(exact('a'), exact('b')), seq(exact('b'), plus(exact('c')))),
+                inter(seq(skip(), exact('a'), exact('b'), skip()), seq(exact('c'), skip())),
+                complement(seq(skip(), exact('a'), exact('b'), skip())),
+                repeat(seq(exact('a'), opt(exact('b'))), 2, 3),
+                determinize(seq(opt(exact('c')), exact('a'))));
+        Random random = new Random(7);
+        for (RegularLanguageIF<Character> l : languages) {
+            RegularLanguageIF<Character> reversed = LanguageReverser.reverse(l);
+            assertNotNull(reversed);
+            for (int n = 0; n < 300; n++) {
+                String s = ReferenceSearch.randomText(random, "abc", 7);
+                List<Character> text = CharHelper.fromString(s);
+                List<Character> backwards = CharHelper.fromString(new StringBuilder(s).reverse().toString());
+                assertEquals(l + " " + text, l.recognize(text), reversed.recognize(backwards));
+            }
+        }
+    }
+
+    @Test
+    public void testUnknownLanguage() {
+        RegularLanguageIF<Character> unknown = new RegularLanguageIF<Character>() {
+            @Override
+            public Set<? extends MultiStateIF<Character>> getInitialStates() {
+                return Collections.emptySet();
+            }
+        };
+        assertNull(LanguageReverser.reverse(seq(exact('a'), unknown)));
+    }
+}
@@ -0,0 +1,80 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.qenherkhopeshef.finitestate.lazy.RegularLanguageFactory.*;
+import static org.qenherkhopeshef.finitestate.lazy.SampleAutomata.*;
+
+/**
+ * Checks that the lazy DFA gives the same results as the plain recognition.
+ *
+ * @author rosmord
+ */
+public class LazyDFATest {
+
+    private static final List<String> INPUTS = Arrays.asList(
+            "", "a", "ab", "abc", "ac", "abac", "aabc", "bc", "aaaabc",
+            "abcbc", "abbb", "acbb", "abab", "acabab", "aaabccc",
+            "<b>un essai</b>!", "<b>un  <b>essai</b>!");
+
+    private static final List<RegularLanguageIF<Character>> LANGUAGES = Arrays.asList(
+            ABC, A_EMPTY_A_B, A_STAR, AB_STAR_AC, AB_OR_AC_BB, A_STAR_BC,
+            A_STAR_BC_INTER_A_BC_STAR, NOT_AB_STAR_AC_ENDNOT, NOT_EMPTY, NOT_TWO,
+            NOT_AB_STAR_AC_ENDNOT_ABAB, B_TAG_NO_BTAG);
+
+    @Test
+    public void testSameResults() {
+        for (RegularLanguageIF<Character> l : LANGUAGES) {
+            RegularLanguageIF<Character> d = determinize(l);
+            for (String s : INPUTS) {
+                assertEquals(l + " on " + s, l.recognize(CharHelper.fromString(s)),
+                        d.recognize(CharHelper.fromString(s)));
+            }
+        }
+    }
+
+    @Test
+    public void testCacheIsReused() {
+        LazyDFA<Character> dfa = new LazyDFA<>(seq(exact('a'), skip(), exact('b')));
+        assertTrue(dfa.recognize(CharHelper.fromString("axxxxxxxxxxb")));
+        int size = dfa.size();
+        assertTrue(dfa.recognize(CharHelper.fromString("axxxxxxxxxxxxxxxxxxxxxxb")));
+        assertFalse(dfa.recognize(CharHelper.fromString("axxxxxxxxxxxxxxxxxxxxxx")));
+        assertEquals(size, dfa.size());
+    }
+
+    @Test
+    public void testDeterminizedSearch() {
+        RegularExtractor<Character> reg = RegularExtractor
+                .<Character>getBuilder()
+                .part(seq(exact('a'), star(exact('b'))))
+                .part(star(exact('b')))
+                .part(seq(star(exact('b')), exact('c')))
+                .determinize()
+                .build();
+        List<MatchResult> res = reg.search(CharHelper.fromString("xxabbbbbbbbcdabcxac"));
+        assertEquals(Arrays.asList(new MatchResult(2, 3, 3, 12),
+                new MatchResult(13, 14, 14, 16),
+                new MatchResult(17, 18, 18, 19)), res);
+        // Second search, with the cache already filled.
+        assertEquals(res, reg.search(CharHelper.fromString("xxabbbbbbbbcdabcxac")));
+    }
+
+    @Test
+    public void testDeterminizedComplexSearch() {
+        RegularLanguageIF<Character> aStarBMinusCd = inter(
+                seq(exact('a'), skip(), exact('b')),
+                complement(seq(skip(), exact('c'), exact('d'), skip())));
+        RegularExtractor<Character> plain = RegularExtractor.getBuilder(aStarBMinusCd).build();
+        RegularExtractor<Character> determinized = RegularExtractor.getBuilder(aStarBMinusCd).determinize().build();
+        String text = "xxaxxcdxxbxxaxxbxacxdbxxxab";
+        assertEquals(plain.search(CharHelper.fromString(text)), determinized.search(CharHelper.fromString(text)));
+        assertEquals(plain.search(CharHelper.fromString(text), 4), determinized.search(CharHelper.fromString(text), 4));
+        assertEquals(plain.recognizesBeginning(CharHelper.fromString("axxbcd")),
+                determinized.recognizesBeginning(CharHelper.fromString("axxbcd")));
+    }
+}
@@ -0,0 +1,79 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.qenherkhopeshef.finitestate.lazy.RegularLanguageFactory.*;
+
+/**
+ * Tests for the lexicon language.
+ *
+ * @author rosmord
+ */
+public class LexiconLanguageTest {
+
+    private static List<List<Character>> words(String... words) {
+        List<List<Character>> result = new ArrayList<>();
+        for (String w : words) {
+            result.add(CharHelper.fromString(w));
+        }
+        return result;
+    }
+
+    @Test
+    public void testRecognize() {
+        RegularLanguageIF<Character> l = lexicon(words("cat", "cats", "dog", "dogs", "do", ""));
+        for (String w : Arrays.asList("cat", "cats", "dog", "dogs", "do", "")) {
+            assertTrue(w, l.recognize(CharHelper.fromString(w)));
+        }
+        for (String w : Arrays.asList("ca", "d", "catss", "dot", "x")) {
+            assertFalse(w, l.recognize(CharHelper.fromString(w)));
+        }
+        assertFalse(lexicon(words()).recognize(CharHelper.fromString("")));
+        assertTrue(lexicon(words()).getInitialStates().isEmpty());
+    }
+
+    @Test
+    public void testMinimal() {
+        LexiconLanguage<Character> l = new LexiconLanguage<>(words("cat", "cats", "rat", "rats", "cat"));
+        assertEquals(4, l.getSize());
+        // c/r -> a -> t (final) -> s (final), and the initial state.
+        assertEquals(5, l.getNumberOfStates());
+        assertEquals(new HashSet<>(words("cat", "cats", "rat", "rats")), new HashSet<>(l.getWords()));
+        assertEquals(new HashSet<>(Arrays.asList('a', 't')), l.getRequiredTokens());
+        assertEquals(Arrays.asList('a', 'b'), new LexiconLanguage<>(words("abc", "abd")).getCommonPrefix());
+    }
+
+    @Test
+    public void testSameMatchesAsUnion() {
+        Random random = new Random(11);
+        List<List<Character>> lexicon = new ArrayList<>();
+        List<RegularLanguageIF<Character>> branches = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            StringBuilder b = new StringBuilder();
+            for (int j = 1 + random.nextInt(5); j > 0; j--) {
+                b.append("abcd".charAt(random.nextInt(4)));
+            }
+            lexicon.add(CharHelper.fromString(b.toString()));
+            branches.add(CharHelper.stringRecognizer(b.toString()));
+        }
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            b.append("abcd ".charAt(random.nextInt(5)));
+        }
+        List<Character> text = CharHelper.fromString(b.toString());
+        // A star after the lexicon avoids the literal search.
+        List<MatchResult> expected = new RegularExtractor<>(union(branches), star(exact('a'))).search(text);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, new RegularExtractor<>(lexicon(lexicon), star(exact('a'))).search(text));
+        assertEquals(expected, RegularExtractor.getBuilder(lexicon(lexicon)).part(star(exact('a'))).twoPhase().build().search(text));
+        assertEquals(new RegularExtractor<>(union(branches)).search(text),
+                new RegularExtractor<>(lexicon(lexicon)).search(text));
+    }
+}
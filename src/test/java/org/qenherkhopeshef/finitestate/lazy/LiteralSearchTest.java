@@ -0,0 +1,78 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.qenherkhopeshef.finitestate.lazy.RegularLanguageFactory.*;
+
+/**
+ * Checks that the search for literal parts finds the same matches as the
+ * general algorithm.
+ *
+ * @author rosmord
+ */
+public class LiteralSearchTest {
+
+    @Test
+    public void testLiteralOrNot() {
+        assertNotNull(LiteralSearch.of(Arrays.asList(CharHelper.stringRecognizer("abc"))));
+        assertNotNull(LiteralSearch.of(Arrays.asList(
+                union(exactSequence('a', 'b'), exact('c')), opt(exact('d')))));
+        assertNull(LiteralSearch.of(Arrays.asList(exact('a'), star(exact('b')))));
+        assertNull(LiteralSearch.of(Arrays.asList(range('a', 'c'))));
+        // The empty sequence would match everywhere.
+        assertNull(LiteralSearch.of(Arrays.asList(opt(exact('a')))));
+    }
+
+    @Test
+    public void testFind() {
+        LiteralSearch<Character> search = LiteralSearch.of(Arrays.asList(
+                union(exactSequence('a', 'b', 'c', 'd'), exactSequence('b', 'c')), exact('x')));
+        TokenInput<Character> input = TokenInput.of(CharHelper.fromString("abcabcdxbcx"));
+        assertArrayEquals(new int[]{3, 7, 8}, search.find(input, 0));
+        assertArrayEquals(new int[]{8, 10, 11}, search.find(input, 8));
+        assertNull(search.find(input, 9));
+    }
+
+    @Test
+    public void testSameMatches() {
+        Random random = new Random(5);
+        List<List<RegularLanguageIF<Character>>> languages = Arrays.asList(
+                Arrays.asList(CharHelper.stringRecognizer("aab")),
+                Arrays.asList(CharHelper.stringRecognizer("aa"), opt(exact('b'))),
+                Arrays.asList(union(exactSequence('a', 'b'), exactSequence('b', 'a'), exact('b'))),
+                Arrays.asList(opt(exact('a')), union(exact('a'), exactSequence('a', 'b')), opt(exact('b'))),
+                Arrays.asList(union(exactSequence('a', 'b', 'a', 'b'), exactSequence('b', 'a')), exact(' ')));
+        for (int n = 0; n < 200; n++) {
+            String s = ReferenceSearch.randomText(random, "aab x", 30);
+            List<Character> text = CharHelper.fromString(s);
+            for (List<RegularLanguageIF<Character>> parts : languages) {
+                assertEquals(s, ReferenceSearch.restartSearch(parts, text), new RegularExtractor<>(parts).search(text));
+            }
+            RegularExtractor<Character> withContext = RegularExtractor.buildRegularExtractorWithPostContext(
+                    Arrays.asList(union(exact('a'), exactSequence('a', 'a'))),
+                    Arrays.asList(exact('b')));
+            // With a max length, the general algorithm is used.
+            assertEquals(s, withContext.search(text, 100), withContext.search(text));
+        }
+    }
+
+    @Test
+    public void testFindOnCodes() {
+        Random random = new Random(7);
+        LiteralSearch<Character> search = LiteralSearch.of(Arrays.asList(
+                union(exactSequence('a', 'b', 'a'), exactSequence('b', 'a'), exact('\u0161')), opt(exact('x'))));
+        for (int n = 0; n < 200; n++) {
+            String s = ReferenceSearch.randomText(random, "ab\u0161x", 30);
+            TokenInput<Character> expected = TokenInput.of(CharHelper.fromString(s));
+            TokenInput<Character> codes = ReferenceSearch.codes(s);
+            for (int from = 0; from <= s.length(); from++) {
+                assertArrayEquals(search.find(expected, from), search.find(codes, from));
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.qenherkhopeshef.finitestate.lazy.RegularLanguageFactory.*;
+
+/**
+ * Checks the classes computed from the labels of a language.
+ *
+ * @author rosmord
+ */
+public class MintermClassifierTest {
+
+    private static final RegularLanguageIF<Character> MIXED = seq(
+            exact('a'),
+            star(range('0', '9')),
+            union(inSet(new HashSet<>(Arrays.asList('x', 'y'))), outOfRange('c', 'f')),
+            complement(seq(skip(), different('z'), skip())),
+            label(c -> Character.isUpperCase(c)));
+
+    @Test
+    public void testClassesAreMinterms() {
+        MintermClassifier<Character> classifier = MintermClassifier.of(Collections.singletonList(MIXED));
+        assertNotNull(classifier);
+        List<LazyLabelIF<Character>> labels = Arrays.asList(
+                new SimpleLabel<>('a'), new RangeLabel<>('0', '9'),
+                new SetLabel<>(new HashSet<>(Arrays.asList('x', 'y'))),
+                new OutOfRangeLabel<>('c', 'f'),
+                new ComplementLabel<>(new SimpleLabel<>('z')),
+                c -> Character.isUpperCase(c));
+        Character[] representative = new Character[classifier.getNumberOfClasses()];
+        for (char c = ' '; c < 128; c++) {
+            int k = classifier.classify(c);
+            assertTrue(k >= 0 && k < classifier.getNumberOfClasses());
+            if (representative[k] == null) {
+                representative[k] = c;
+            } else {
+                for (LazyLabelIF<Character> label : labels) {
+                    assertEquals(c + " and " + representative[k],
+                            label.matches(representative[k]), label.matches(c));
+                }
+            }
+        }
+        assertNotEquals(classifier.classify('c'), classifier.classify('d'));
+        assertEquals(classifier.classify('d'), classifier.classify('e'));
+        assertNotEquals(classifier.classify('b'), classifier.classify('B'));
+    }
+
+    @Test
+    public void testDenseClasses() {
+        // With an opaque label, the classes are numbered as they are met.
+        MintermClassifier<Character> classifier = MintermClassifier.of(Collections.singletonList(MIXED));
+        Set<Integer> classes = new HashSet<>();
+        int max = -1;
+        for (char c = ' '; c < 128; c++) {
+            int k = classifier.classify(c);
+            classes.add(k);
+            max = Math.max(max, k);
+        }
+        assertEquals(classes.size(), max + 1);
+    }
+
+    @Test
+    public void testSameResults() {
+        RegularLanguageIF<Character> word = seq(range('a', 'z'), star(range('a', 'z')));
+        RegularExtractor<Character> plain = RegularExtractor.getBuilder(word)
+                .part(inSet(new HashSet<>(Arrays.asList('.', '!'))))
+                .build();
+        RegularExtractor<Character> minterms = RegularExtractor.getBuilder(word)
+                .part(inSet(new HashSet<>(Arrays.asList('.', '!'))))
+                .minterms()
+                .build();
+        String text = "Un essai! Des mots. Encore des mots, toujours des mots.";
+        assertEquals(plain.search(CharHelper.fromString(text)), minterms.search(CharHelper.fromString(text)));
+    }
+
+    @Test
+    public void testSetWithComparator() {
+        TreeSet<String> ci = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        ci.add("hello");
+        List<String> text = Arrays.asList("zz", "hello", "HELLO", "qq");
+        List<MatchResult> expected = RegularExtractor.getBuilder(inSet(ci)).build().search(text);
+        assertEquals(2, expected.size());
+        assertEquals(expected, RegularExtractor.getBuilder(inSet(ci)).minterms().build().search(text));
+        TreeSet<String> other = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        other.add("ZZ");
+        expected = RegularExtractor.getBuilder(notInSet(other)).build().search(text);
+        assertEquals(3, expected.size());
+        assertEquals(expected, RegularExtractor.getBuilder(notInSet(other)).minterms().build().search(text));
+        RegularExtractor<String> complement = RegularExtractor.getBuilder(
+                new LabelLanguage<>(new ComplementSetLabel<>(other))).minterms().build();
+        assertEquals(expected, complement.search(text));
+    }
+
+    @Test
+    public void testUnknownLanguage() {
+        RegularLanguageIF<Character> unknown = new RegularLanguageIF<Character>() {
+            @Override
+            public Set<? extends MultiStateIF<Character>> getInitialStates() {
+                return exact('a').getInitialStates();
+            }
+        };
+        assertNull(MintermClassifier.of(Collections.singletonList(seq(exact('b'), unknown))));
+    }
+}
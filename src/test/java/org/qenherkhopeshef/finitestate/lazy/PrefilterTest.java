@@ -0,0 +1,102 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.qenherkhopeshef.finitestate.lazy.RegularLanguageFactory.*;
+
+/**
+ * Checks the extraction of literal tokens, and that searches using them find
+ * the same matches.
+ *
+ * @author rosmord
+ */
+public class PrefilterTest {
+
+    @Test
+    public void testPrefix() {
+        Prefilter<Character> p = Prefilter.of(seq(exact('a'), exact('b'), star(exact('c')), exact('d')));
+        assertEquals(Arrays.asList('a', 'b'), p.getPrefix());
+        assertEquals(Character.valueOf('d'), p.getRequired());
+        p = Prefilter.of(union(seq(exact('a'), exact('b'), exact('c')), seq(exact('a'), exact('b'), exact('d'))));
+        assertEquals(Arrays.asList('a', 'b'), p.getPrefix());
+        assertNull(p.getRequired());
+        p = Prefilter.of(seq(repeat(seq(exact('a'), exact('b')), 2, 3), exact('c')));
+        assertEquals(Arrays.asList('a', 'b'), p.getPrefix());
+        assertEquals(Character.valueOf('c'), p.getRequired());
+    }
+
+    @Test
+    public void testRequired() {
+        Prefilter<Character> p = Prefilter.of(seq(any(), union(seq(exact('x'), exact('y')), seq(exact('y'), exact('z')))));
+        assertTrue(p.getPrefix().isEmpty());
+        assertEquals(Character.valueOf('y'), p.getRequired());
+        p = Prefilter.of(inter(seq(skip(), exact('q')), seq(any(), any())));
+        assertEquals(Character.valueOf('q'), p.getRequired());
+    }
+
+    @Test
+    public void testNoLiteral() {
+        assertNull(Prefilter.of(seq(star(exact('a')), opt(exact('b')))));
+        assertNull(Prefilter.of(union(exact('a'), exact('b'))));
+        assertNull(Prefilter.of(complement(exact('a'))));
+        assertNull(Prefilter.of(seq(range('a', 'z'), any())));
+    }
+
+    @Test
+    public void testScannerOnCodes() {
+        // '\u0161' has the same low bits as 'a'.
+        Random random = new Random(3);
+        String alphabet = "ab\u0161z";
+        Prefilter<Character> p = Prefilter.of(seq(exact('a'), exact('\u0161'), exact('a'), exact('b'), skip(), exact('z')));
+        for (int n = 0; n < 200; n++) {
+            String s = ReferenceSearch.randomText(random, alphabet, 40);
+            Prefilter<Character>.Scanner expected = p.scanner(TokenInput.of(CharHelper.fromString(s)));
+            Prefilter<Character>.Scanner scanner = p.scanner(ReferenceSearch.codes(s));
+            for (int from = 0; from <= s.length(); from++) {
+                assertEquals(s, expected.next(from), scanner.next(from));
+            }
+        }
+    }
+
+
+    @Test
+    public void testScanner() {
+        Prefilter<Character> p = Prefilter.of(seq(exact('a'), exact('b'), exact('a'), skip(), exact('z')));
+        Prefilter<Character>.Scanner scanner = p.scanner(TokenInput.of(CharHelper.fromString("abbabaxabaaz")));
+        assertEquals(3, scanner.next(0));
+        assertEquals(3, scanner.next(3));
+        assertEquals(7, scanner.next(4));
+        assertEquals(-1, scanner.next(8));
+        scanner = p.scanner(TokenInput.of(CharHelper.fromString("abaaba")));
+        assertEquals(-1, scanner.next(0));
+    }
+
+    @Test
+    public void testSameMatches() {
+        Random random = new Random(17);
+        List<List<RegularLanguageIF<Character>>> languages = Arrays.asList(
+                Arrays.asList(exact('a'), star(exact('a')), exact('b')),
+                Arrays.asList(seq(exact('a'), exact('b')), star(range('0', '9'))),
+                Arrays.asList(star(exact('a')), exact('b'), plus(range('0', '9'))),
+                Arrays.asList(seq(exact('a'), skip(), exact('b'))),
+                Arrays.asList(star(seq(exact('a'), exact('b'))), exact('x')),
+                Arrays.asList(seq(exact('b'), exact('a'), exact('b'))));
+        for (int n = 0; n < 100; n++) {
+            String s = ReferenceSearch.randomText(random, "aab01 x", 40);
+            List<Character> text = CharHelper.fromString(s);
+            for (List<RegularLanguageIF<Character>> parts : languages) {
+                List<MatchResult> expected = ReferenceSearch.restartSearch(parts, text);
+                assertEquals(s, expected, new RegularExtractor<>(parts).search(text));
+                RegularExtractor.Builder<Character> builder = RegularExtractor.getBuilder();
+                parts.forEach(builder::part);
+                assertEquals(s, expected, builder.twoPhase().build().search(text));
+                assertEquals(s, expected, new CharRegularExtractor(new RegularExtractor<>(parts)).search(s));
+            }
+        }
+    }
+}
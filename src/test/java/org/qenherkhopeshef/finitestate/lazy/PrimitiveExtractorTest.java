@@ -0,0 +1,127 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.qenherkhopeshef.finitestate.lazy.RegularLanguageFactory.*;
+
+/**
+ * Checks that the char and int extractors find the same matches as the
+ * extractor on boxed tokens.
+ *
+ * @author rosmord
+ */
+public class PrimitiveExtractorTest {
+
+    private static final String TEXT = "Le 12 juin 1815, à 10h30, Ney écrit : « Ça ira ! » - tél. 0123.";
+
+    @Test
+    public void testSameMatchesAsBoxed() {
+        BitSet vowels = new BitSet();
+        for (char c : "aeiouéà".toCharArray()) {
+            vowels.set(c);
+        }
+        List<RegularExtractor<Character>> extractors = Arrays.asList(
+                new RegularExtractor<>(plus(range('0', '9'))),
+                new RegularExtractor<>(exact('e'), star(different(' '))),
+                new RegularExtractor<>(charSet(vowels), plus(notInSet(new HashSet<>(Arrays.asList('a', 'e', 'i', 'o', 'u', ' '))))),
+                new RegularExtractor<>(label(c -> Character.isUpperCase(c)), star(label(c -> Character.isLetter(c)))),
+                new RegularExtractor<>(outOfRange(' ', '~')));
+        for (RegularExtractor<Character> e : extractors) {
+            List<MatchResult> expected = e.search(CharHelper.fromString(TEXT));
+            assertFalse(expected.isEmpty());
+            CharRegularExtractor charExtractor = new CharRegularExtractor(e);
+            assertEquals(expected, charExtractor.search(TEXT));
+            assertEquals(e.search(CharHelper.fromString(TEXT), 2), charExtractor.search(TEXT, 2));
+            // The second pass only uses the cache.
+            assertEquals(expected, charExtractor.search(new StringBuilder(TEXT)));
+        }
+    }
+
+    @Test
+    public void testRecognize() {
+        CharRegularExtractor e = new CharRegularExtractor(Arrays.asList(plus(range('a', 'z')), plus(range('0', '9'))));
+        assertEquals(Arrays.asList(3, 5), e.recognizesAll("abc12").get());
+        assertFalse(e.recognizesAll("abc12x").isPresent());
+        assertEquals(Arrays.asList(2, 3), e.recognizesBeginning("ab1x").get());
+        assertFalse(e.recognizesBeginning("1x").isPresent());
+    }
+
+    @Test
+    public void testCacheIsUsed() {
+        CharRegularExtractor e = new CharRegularExtractor(Arrays.asList(exact('x'), plus(charSet(BitSet.valueOf(new long[]{0x3ff000000000000L})))));
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append("ab x12 ");
+        }
+        assertEquals(1000, e.search(text).size());
+        assertTrue(e.getCacheStatistics().getHits() > 10 * e.getCacheStatistics().getMisses());
+    }
+
+    @Test
+    public void testCodePoints() {
+        String text = "a𓂀b𓃀𓃁c 𓂀";
+        BitSet hieroglyphs = new BitSet();
+        hieroglyphs.set(0x13000, 0x1342F);
+        RegularExtractor<Integer> boxed = new RegularExtractor<>(plus(intSet(hieroglyphs)), opt(range((int) 'a', (int) 'z')));
+        List<Integer> tokens = new ArrayList<>();
+        text.codePoints().forEach(tokens::add);
+        List<MatchResult> expected = boxed.search(tokens);
+        assertEquals(4, expected.size());
+        IntRegularExtractor e = new IntRegularExtractor(boxed);
+        assertEquals(expected, e.search(text.codePoints().toArray()));
+        assertEquals(expected, e.search(text.codePoints().toArray()));
+    }
+
+    @Test
+    public void testSetWithComparator() {
+        TreeSet<Character> ci = new TreeSet<>((a, b) -> Character.compare(Character.toLowerCase(a), Character.toLowerCase(b)));
+        ci.addAll(Arrays.asList('n', 'e'));
+        TreeSet<Character> natural = new TreeSet<>(Arrays.asList('N', 'e', '\u00e0'));
+        List<RegularExtractor<Character>> extractors = Arrays.asList(
+                new RegularExtractor<>(plus(inSet(ci))),
+                new RegularExtractor<>(plus(notInSet(ci)), exact(' ')),
+                new RegularExtractor<>(plus(inSet(natural))));
+        for (RegularExtractor<Character> e : extractors) {
+            List<MatchResult> expected = e.search(CharHelper.fromString(TEXT));
+            assertFalse(expected.isEmpty());
+            assertEquals(expected, new CharRegularExtractor(e).search(TEXT));
+        }
+        // The "N" of "Ney" is found.
+        assertEquals(4, extractors.get(0).search(CharHelper.fromString(TEXT)).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIntSetWithComparator() {
+        new IntRegularExtractor(Arrays.asList(inSet(new TreeSet<>(Comparator.comparingInt((Integer i) -> i / 10)))));
+    }
+
+    @Test
+    public void testBitSetLabelEquality() {
+        BitSet codes = new BitSet();
+        codes.set('a', 'z' + 1);
+        assertEquals(BitSetLabel.forChars(codes), BitSetLabel.forChars(codes));
+        assertEquals(BitSetLabel.forInts(codes), BitSetLabel.forInts(codes));
+        assertNotEquals(BitSetLabel.forChars(codes), BitSetLabel.forInts(codes));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownIntLabel() {
+        new IntRegularExtractor(Arrays.asList(label(i -> i % 2 == 0)));
+    }
+
+    @Test
+    public void testNegativeInts() {
+        IntRegularExtractor e = new IntRegularExtractor(Arrays.asList(exact(-5), plus(range(Integer.MIN_VALUE, -10))));
+        assertEquals(Arrays.asList(new MatchResult(1, 2, 3)),
+                e.search(new int[]{3, -5, -20, Integer.MIN_VALUE, -9}));
+    }
+}
@@ -0,0 +1,113 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.qenherkhopeshef.finitestate.lazy.RegularLanguageFactory.*;
+
+/**
+ * Helpers for the tests which compare the optimized searches with the
+ * original algorithm, on random texts.
+ *
+ * @author rosmord
+ */
+public class ReferenceSearch {
+
+    private ReferenceSearch() {
+    }
+
+    /**
+     * A random text, made of less than maxLength chars of an alphabet.
+     *
+     * @param random
+     * @param alphabet
+     * @param maxLength
+     * @return
+     */
+    public static String randomText(Random random, String alphabet, int maxLength) {
+        StringBuilder b = new StringBuilder();
+        for (int i = random.nextInt(maxLength); i > 0; i--) {
+            b.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return b.toString();
+    }
+
+    /**
+     * The original search : restart the recognizer after each match.
+     *
+     * @param <T>
+     * @param parts
+     * @param text
+     * @return
+     */
+    public static <T> List<MatchResult> restartSearch(List<RegularLanguageIF<T>> parts, List<T> text) {
+        return restartSearch(parts, 0, text, Integer.MAX_VALUE);
+    }
+
+    /**
+     * The original search with a max length : search from each position, and
+     * look one step further if the match is too long.
+     *
+     * @param <T>
+     * @param parts the parts, including those of the post context.
+     * @param postContextSize the number of parts in the post context.
+     * @param text
+     * @param maxLength
+     * @return
+     */
+    public static <T> List<MatchResult> restartSearch(List<RegularLanguageIF<T>> parts, int postContextSize, List<T> text, int maxLength) {
+        List<RegularLanguageIF<T>> withSkip = new ArrayList<>();
+        withSkip.add(skip());
+        withSkip.addAll(parts);
+        ReportingLanguageRecognizer<T> recognizer = new ReportingLanguageRecognizer<>(withSkip);
+        List<MatchResult> result = new ArrayList<>();
+        int pos = 0;
+        while (pos <= text.size() && recognizer.recognize(pos, text)) {
+            List<Integer> markers = recognizer.getMarkers();
+            MatchResult m = new MatchResult(markers.subList(0, markers.size() - postContextSize));
+            if (m.getMatchLength() <= maxLength) {
+                result.add(m);
+                pos = m.getLastPosition() == pos ? pos + 1 : m.getLastPosition();
+            } else {
+                pos++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * An input which can only be read as codes.
+     *
+     * @param text
+     * @return
+     */
+    public static TokenInput<Character> codes(String text) {
+        return new TokenInput<Character>() {
+            @Override
+            public int size() {
+                return text.length();
+            }
+
+            @Override
+            public Character get(int pos) {
+                throw new AssertionError("boxed token");
+            }
+
+            @Override
+            public boolean hasCodes() {
+                return true;
+            }
+
+            @Override
+            public int code(int pos) {
+                return text.charAt(pos);
+            }
+
+            @Override
+            public LazyDFA.Transition<Character> next(LazyDFA<Character> dfa, LazyDFA.State<Character> state, int pos) {
+                throw new AssertionError("automaton used");
+            }
+        };
+    }
+}
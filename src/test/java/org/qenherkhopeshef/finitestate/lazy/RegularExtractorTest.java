@@ -5,6 +5,7 @@ import org.junit.Test;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
@@ -133,4 +134,57 @@ public class RegularExtractorTest {
         assertEquals(Arrays.asList("100", "2", "4"), extracted);
     }
 
+    @Test
+    public void testSinglePassSearchLikeRestarts() {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            b.append("ab").append(i).append(" aab, ");
+        }
+        List<Character> text = CharHelper.fromString(b.toString());
+        List<List<RegularLanguageIF<Character>>> languages = Arrays.asList(
+                Arrays.asList(exact('a'), star(exact('a')), exact('b')),
+                Arrays.asList(opt(exact('a')), star(range('0', '9'))),
+                Arrays.asList(plus(range('0', '9')), exact(' ')));
+        for (List<RegularLanguageIF<Character>> parts : languages) {
+            // Reference : restart the recognizer after each match.
+            List<MatchResult> expected = ReferenceSearch.restartSearch(parts, text);
+            assertTrue(expected.size() >= 300);
+            assertEquals(expected, new RegularExtractor<>(parts).search(text));
+        }
+    }
+
+    @Test
+    public void testTwoPhaseSearch() {
+        Random random = new Random(3);
+        List<List<RegularLanguageIF<Character>>> languages = Arrays.asList(
+                Arrays.asList(exact('a'), star(exact('a')), exact('b')),
+                Arrays.asList(opt(exact('a')), star(range('0', '9'))),
+                Arrays.asList(star(exact('a')), opt(exact('b')), plus(range('0', '9'))),
+                Arrays.asList(seq(exact('a'), skip(), exact('b'))),
+                Arrays.asList(opt(exact('b'))));
+        for (int n = 0; n < 100; n++) {
+            String s = ReferenceSearch.randomText(random, "aab01 x", 30);
+            List<Character> text = CharHelper.fromString(s);
+            for (List<RegularLanguageIF<Character>> parts : languages) {
+                RegularExtractor.Builder<Character> builder = RegularExtractor.getBuilder();
+                parts.forEach(builder::part);
+                RegularExtractor<Character> twoPhases = builder.twoPhase().build();
+                assertEquals(s, new RegularExtractor<>(parts).search(text), twoPhases.search(text));
+            }
+            RegularExtractor<Character> withContext = RegularExtractor.<Character>getBuilder()
+                    .part(plus(range('0', '9')))
+                    .startPostContext()
+                    .part(outOfRange('0', '9'))
+                    .determinize()
+                    .build();
+            RegularExtractor<Character> withContextTwoPhases = RegularExtractor.<Character>getBuilder()
+                    .part(plus(range('0', '9')))
+                    .startPostContext()
+                    .part(outOfRange('0', '9'))
+                    .twoPhase()
+                    .determinize()
+                    .build();
+            assertEquals(withContext.search(text), withContextTwoPhases.search(text));
+        }
+    }
 }
@@ -0,0 +1,95 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.qenherkhopeshef.finitestate.lazy.RegularLanguageFactory.*;
+
+/**
+ * Tests for counted repetitions.
+ *
+ * @author rosmord
+ */
+public class RepeatLanguageTest {
+
+    @Test
+    public void testBounds() {
+        RegularLanguageIF<Character> l = repeat(exact('a'), 2, 4);
+        assertFalse(l.recognize(CharHelper.fromString("")));
+        assertFalse(l.recognize(CharHelper.fromString("a")));
+        assertTrue(l.recognize(CharHelper.fromString("aa")));
+        assertTrue(l.recognize(CharHelper.fromString("aaaa")));
+        assertFalse(l.recognize(CharHelper.fromString("aaaaa")));
+        assertFalse(l.recognize(CharHelper.fromString("aab")));
+    }
+
+    @Test
+    public void testSameAsUnrolled() {
+        Random random = new Random(1);
+        List<RegularLanguageIF<Character>> repeated = new ArrayList<>();
+        repeated.add(exact('a'));
+        repeated.add(seq(exact('a'), opt(exact('b'))));
+        repeated.add(opt(exact('b')));
+        repeated.add(star(exact('a')));
+        for (RegularLanguageIF<Character> l : repeated) {
+            for (int min = 0; min < 4; min++) {
+                for (int max = Math.max(min, 1); max < 5; max++) {
+                    RegularLanguageIF<Character> counted = repeat(l, min, max);
+                    RegularLanguageIF<Character> unrolled = unroll(l, min, max);
+                    for (int n = 0; n < 50; n++) {
+                        StringBuilder b = new StringBuilder();
+                        for (int i = random.nextInt(9); i > 0; i--) {
+                            b.append(random.nextInt(4) == 0 ? 'b' : 'a');
+                        }
+                        List<Character> text = CharHelper.fromString(b.toString());
+                        assertEquals(l + " " + min + " " + max + " " + b,
+                                unrolled.recognize(text), counted.recognize(text));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testExactAndMaxLength() {
+        assertTrue(RegularLanguageFactory.<Character>exactLength(3).recognize(CharHelper.fromString("abc")));
+        assertFalse(RegularLanguageFactory.<Character>exactLength(3).recognize(CharHelper.fromString("ab")));
+        assertTrue(RegularLanguageFactory.<Character>maxLength(3).recognize(CharHelper.fromString("")));
+        assertFalse(RegularLanguageFactory.<Character>maxLength(3).recognize(CharHelper.fromString("abcd")));
+        RegularExtractor<Character> e = new RegularExtractor<>(maxLength(seq(exact('a'), skip(), exact('b')), 4));
+        assertEquals(1, e.search(CharHelper.fromString("xxa11bxa111b")).size());
+    }
+
+    @Test
+    public void testFewStates() {
+        RegularLanguageIF<Character> l = maxLength(200);
+        Set<MultiStateIF<Character>> current = new HashSet<>(l.getInitialStates());
+        for (int i = 0; i < 150; i++) {
+            Set<MultiStateIF<Character>> next = new HashSet<>();
+            for (MultiStateIF<Character> s : current) {
+                next.addAll(s.accept('x'));
+            }
+            current = next;
+            assertTrue(current.size() <= 2);
+        }
+    }
+
+    private static RegularLanguageIF<Character> unroll(RegularLanguageIF<Character> l, int min, int max) {
+        List<RegularLanguageIF<Character>> parts = new ArrayList<>();
+        for (int i = 0; i < min; i++) {
+            parts.add(l);
+        }
+        RegularLanguageIF<Character> optional = emptySequence();
+        for (int i = min; i < max; i++) {
+            optional = opt(seq(l, optional));
+        }
+        parts.add(optional);
+        return seq(parts);
+    }
+}
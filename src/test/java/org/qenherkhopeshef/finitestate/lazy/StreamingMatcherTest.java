@@ -0,0 +1,83 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.qenherkhopeshef.finitestate.lazy.RegularLanguageFactory.*;
+
+/**
+ * Checks that the streaming matcher finds the same matches as search().
+ *
+ * @author rosmord
+ */
+public class StreamingMatcherTest {
+
+    private static final String TEXT = "il y a 100 manières de travailler 2 à 4, ab abc aab 12";
+
+    @Test
+    public void testSameMatchesAsSearch() {
+        List<RegularExtractor<Character>> extractors = Arrays.asList(
+                new RegularExtractor<>(plus(range('0', '9'))),
+                new RegularExtractor<>(exact('a'), star(exact('b'))),
+                new RegularExtractor<>(opt(exact('a'))),
+                new RegularExtractor<>(exact('a'), skip(), exact('c')),
+                RegularExtractor.<Character>getBuilder()
+                        .part(plus(range('0', '9')))
+                        .startPostContext()
+                        .part(outOfRange('0', '9'))
+                        .determinize()
+                        .build());
+        for (RegularExtractor<Character> e : extractors) {
+            List<MatchResult> expected = e.search(CharHelper.fromString(TEXT));
+            List<MatchResult> found = new ArrayList<>();
+            StreamingMatcher<Character> matcher = new StreamingMatcher<>(e, found::add);
+            matcher.pushAll(CharHelper.fromString(TEXT));
+            matcher.close();
+            assertEquals(expected, found);
+        }
+    }
+
+    @Test
+    public void testMatchesAreReportedEarly() {
+        List<MatchResult> found = new ArrayList<>();
+        StreamingMatcher<Character> matcher = new StreamingMatcher<>(
+                new RegularExtractor<>(exact('a'), exact('b')), found::add);
+        matcher.pushAll(CharHelper.fromString("xxa"));
+        assertTrue(found.isEmpty());
+        matcher.push('b');
+        assertEquals(Arrays.asList(new MatchResult(2, 3, 4)), found);
+    }
+
+    @Test
+    public void testWindowIsBounded() {
+        RegularExtractor<Character> e = RegularExtractor.<Character>getBuilder()
+                .part(plus(range('0', '9')))
+                .startPostContext()
+                .part(outOfRange('0', '9'))
+                .build();
+        int[] count = {0};
+        StreamingMatcher<Character> matcher = new StreamingMatcher<>(e, m -> count[0]++);
+        for (int i = 0; i < 10000; i++) {
+            matcher.pushAll(CharHelper.fromString("some text 12 "));
+            assertTrue(matcher.getWindowSize() < 10);
+        }
+        assertEquals(10000, count[0]);
+        assertEquals(130000, matcher.getPosition());
+        // Without post context, nothing is kept.
+        StreamingMatcher<Character> simple = new StreamingMatcher<>(
+                new RegularExtractor<>(exact('a'), skip(), exact('b')), m -> {});
+        simple.pushAll(CharHelper.fromString("xxxaxxxxxxxxxxxxx"));
+        assertEquals(0, simple.getWindowSize());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosed() {
+        StreamingMatcher<Character> matcher = new StreamingMatcher<>(new RegularExtractor<>(exact('a')), m -> {});
+        matcher.close();
+        matcher.push('a');
+    }
+}
@@ -5,7 +5,9 @@
  */
 package org.qenherkhopeshef.finitestate.lazy;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -68,4 +70,43 @@ public class TestMaxLength {
         assertEquals(1, l1.size());
         assertEquals("axb", l1.get(0).extractFullMatch(input));
     }
+
+    @Test
+    public void sameResultsAsRescan() {
+        Random random = new Random(42);
+        List<List<RegularLanguageIF<Character>>> languages = Arrays.asList(
+                Arrays.asList(seq(exact('a'), skip(), exact('b'))),
+                Arrays.asList(exact('a'), star(different('c')), exact('b')),
+                Arrays.asList(plus(exact('a')), opt(exact('b'))),
+                Arrays.asList(inter(seq(exact('a'), skip(), exact('b')), complement(seq(skip(), exact('c'), exact('d'), skip())))));
+        for (int n = 0; n < 200; n++) {
+            String s = ReferenceSearch.randomText(random, "abxcd", 40);
+            List<Character> text = CharHelper.fromString(s);
+            for (List<RegularLanguageIF<Character>> parts : languages) {
+                for (int maxLength = 1; maxLength < 8; maxLength++) {
+                    assertEquals(s + " " + maxLength, ReferenceSearch.restartSearch(parts, 0, text, maxLength),
+                            new RegularExtractor<>(parts).search(text, maxLength));
+                }
+            }
+            // With a post context.
+            RegularExtractor<Character> withContext = RegularExtractor.<Character>getBuilder()
+                    .part(exact('a')).part(star(different('b')))
+                    .startPostContext().part(exact('b')).part(exact('x'))
+                    .build();
+            List<RegularLanguageIF<Character>> all = Arrays.asList(exact('a'), star(different('b')), exact('b'), exact('x'));
+            for (int maxLength = 1; maxLength < 8; maxLength++) {
+                assertEquals(ReferenceSearch.restartSearch(all, 2, text, maxLength), withContext.search(text, maxLength));
+            }
+        }
+    }
+
+
+    @Test
+    public void longInputWithoutMatch() {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            b.append('a');
+        }
+        assertTrue(astarbEx.search(CharHelper.fromString(b.toString()), 10).isEmpty());
+    }
 }
@@ -0,0 +1,61 @@
+package org.qenherkhopeshef.finitestate.lazy;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.qenherkhopeshef.finitestate.lazy.RegularLanguageFactory.*;
+
+/**
+ * Checks the caching of transitions per token class.
+ *
+ * @author rosmord
+ */
+public class TokenClassifierTest {
+
+    private static final RegularLanguageIF<Character> A_STAR_B_MINUS_CD = inter(
+            seq(exact('a'), skip(), exact('b')),
+            complement(seq(skip(), exact('c'), exact('d'), skip())));
+
+    /**
+     * a, b, c and d have their own classes ; all other characters are
+     * equivalent.
+     */
+    private static final TokenClassifier<Character> ABCD = c -> c >= 'a' && c <= 'd' ? c - 'a' : 4;
+
+    private static final String TEXT = "xxaxxcdxxbxxaxxbxacxdbxxxabaaxbbcdab";
+
+    @Test
+    public void testSameResults() {
+        RegularExtractor<Character> plain = RegularExtractor.getBuilder(A_STAR_B_MINUS_CD).build();
+        RegularExtractor<Character> classified = RegularExtractor.getBuilder(A_STAR_B_MINUS_CD)
+                .classifier(ABCD)
+                .build();
+        assertEquals(plain.search(CharHelper.fromString(TEXT)), classified.search(CharHelper.fromString(TEXT)));
+        assertEquals(plain.search(CharHelper.fromString(TEXT), 5), classified.search(CharHelper.fromString(TEXT), 5));
+        assertEquals(plain.recognizesAll(CharHelper.fromString("axyzb")),
+                classified.recognizesAll(CharHelper.fromString("axyzb")));
+    }
+
+    @Test
+    public void testTransitionsPerClass() {
+        LazyDFA<Character> dfa = new LazyDFA<>(seq(exact('a'), skip(), exact('b')),
+                CacheBudget.UNLIMITED, new CacheStatistics(), ABCD);
+        assertTrue(dfa.recognize(CharHelper.fromString("axyzwb")));
+        long misses = dfa.getStatistics().getMisses();
+        long hits = dfa.getStatistics().getHits();
+        // Other letters are in the same class as x, y, z and w.
+        List<Character> other = CharHelper.fromString("aefghijklmnb");
+        assertTrue(dfa.recognize(other));
+        assertEquals(misses, dfa.getStatistics().getMisses());
+        assertEquals(hits + other.size(), dfa.getStatistics().getHits());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeClass() {
+        LazyDFA<Character> dfa = new LazyDFA<>(seq(exact('a'), skip(), exact('b')),
+                CacheBudget.UNLIMITED, new CacheStatistics(), c -> -1);
+        dfa.recognize(CharHelper.fromString("ab"));
+    }
+}